@@ -0,0 +1,122 @@
+package com.reactivespring.config;
+
+import com.reactivespring.domain.MovieInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+//Creates the indexes of the MovieInfo collection before the application starts serving requests and then asks Mongo
+//(explain) how it would run each repository query. A query that would scan the whole collection is logged as a
+//warning, or stops the application if mongodb.indexes.failOnCollectionScan is true. Also gives the documents saved
+//before MovieInfo had a version their first version.
+@Component
+@Slf4j
+public class MongoIndexInitializer implements SmartInitializingSingleton {
+
+    //Case-insensitive comparison of movie names and cast, MovieInfoRepository.findByName and the prefix searches use
+    //the same collation otherwise Mongo can't use the name/cast indexes for them
+    public static final Collation NAME_COLLATION = Collation.of("en").strength(Collation.ComparisonLevel.secondary());
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private boolean failOnCollectionScan;
+    private Duration timeout;
+
+    public MongoIndexInitializer(ReactiveMongoTemplate mongoTemplate,
+                                 @Value("${mongodb.indexes.failOnCollectionScan:false}") boolean failOnCollectionScan,
+                                 @Value("${mongodb.indexes.timeout:30s}") Duration timeout){
+        this.mongoTemplate = mongoTemplate;
+        this.failOnCollectionScan = failOnCollectionScan;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        //blocking is fine here, this runs once on the main thread while the application starts
+        createIndexes()
+                .then(verifyQueryPath("listMoviesInfo (year)", new Document("year", 0), null))
+                .then(verifyQueryPath("findByName", new Document("name", ""), NAME_COLLATION))
+                .then(verifyQueryPath("search (name)", new Document("name", prefixRange()), NAME_COLLATION))
+                .then(verifyQueryPath("search (cast)", new Document("cast", new Document("$elemMatch", prefixRange())), NAME_COLLATION))
+                .block(timeout);
+    }
+
+    private Mono<Void> createIndexes(){
+        var indexOps = mongoTemplate.indexOps(MovieInfo.class);
+        //indexes declared with @Indexed/@CompoundIndex on MovieInfo
+        var indexResolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        var declaredIndexes = Flux.fromIterable(indexResolver.resolveIndexFor(MovieInfo.class))
+                .concatMap(indexOps::ensureIndex);
+        //@Indexed can't take a collation in this Spring Data version, so the name index is created here.
+        //Not unique, remakes have the same name.
+        var nameIndex = indexOps.ensureIndex(new Index()
+                .on("name", Sort.Direction.ASC)
+                .named("name_ci")
+                .collation(NAME_COLLATION));
+
+        var castIndex = indexOps.ensureIndex(new Index()
+                .on("cast", Sort.Direction.ASC)
+                .named("cast_ci")
+                .collation(NAME_COLLATION));
+        //the words of /v1/searchmovies?q=, a word of the name counts for more than one of the cast
+        var textIndex = indexOps.ensureIndex(new TextIndexDefinition.TextIndexDefinitionBuilder()
+                .onField("name", 3F)
+                .onField("cast")
+                .named("name_cast_text")
+                .build());
+
+        return declaredIndexes.concatWith(nameIndex).concatWith(castIndex).concatWith(textIndex)
+                .doOnNext(indexName -> log.info("Index {} is in place on {}", indexName, mongoTemplate.getCollectionName(MovieInfo.class)))
+                .then();
+    }
+
+    private Mono<Void> verifyQueryPath(String queryPath, Document filter, Collation collation){
+        var find = new Document("find", mongoTemplate.getCollectionName(MovieInfo.class))
+                .append("filter", filter);
+        if (collation != null)
+            find.append("collation", collation.toDocument());
+
+        return mongoTemplate.executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"))
+                .flatMap(explain -> {
+                    var winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan");
+                    if (!hasStage(winningPlan, "COLLSCAN"))
+                        return Mono.empty();
+
+                    var message = "MovieInfoRepository." + queryPath + " would scan the whole collection, winning plan: " + winningPlan;
+                    if (failOnCollectionScan)
+                        return Mono.error(new IllegalStateException(message));
+
+                    log.warn(message);
+                    return Mono.empty();
+                });
+    }
+
+    //what MovieInfoSearchRepository queries for a name or cast prefix
+    private static Document prefixRange(){
+        return new Document("$gte", "").append("$lt", "\uFFFF");
+    }
+
+    //the stage can be nested at any depth, e.g. FETCH -> IXSCAN or SUBPLAN -> OR -> COLLSCAN
+    private static boolean hasStage(Object plan, String stage){
+        if (plan instanceof Document) {
+            var planStage = (Document) plan;
+            return stage.equals(planStage.get("stage")) || planStage.values().stream().anyMatch(value -> hasStage(value, stage));
+        }
+        if (plan instanceof List)
+            return ((List<?>) plan).stream().anyMatch(value -> hasStage(value, stage));
+
+        return false;
+    }
+}
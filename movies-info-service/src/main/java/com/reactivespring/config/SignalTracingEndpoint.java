@@ -0,0 +1,36 @@
+package com.reactivespring.config;
+
+import com.reactivespring.util.SignalTracer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+//GET /actuator/signaltracing shows the current settings,
+//POST /actuator/signaltracing {"enabled": true, "sampleRate": 1000} changes them without a restart.
+//Not exposed over http by default, since anyone who can reach the port could switch it on:
+//--management.endpoints.web.exposure.include=health,metrics,prometheus,signaltracing
+@Component
+@Endpoint(id = "signaltracing")
+public class SignalTracingEndpoint {
+
+    private final SignalTracer signalTracer;
+
+    public SignalTracingEndpoint(SignalTracer signalTracer) {
+        this.signalTracer = signalTracer;
+    }
+
+    @ReadOperation
+    public Map<String, Object> signalTracing() {
+        return Map.of("enabled", signalTracer.isEnabled(), "sampleRate", signalTracer.getSampleRate());
+    }
+
+    @WriteOperation
+    public Map<String, Object> configure(boolean enabled, @Nullable Integer sampleRate) {
+        signalTracer.configure(enabled, sampleRate != null ? sampleRate : signalTracer.getSampleRate());
+        return signalTracing();
+    }
+}
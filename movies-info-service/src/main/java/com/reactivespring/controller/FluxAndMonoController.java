@@ -1,5 +1,6 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.util.SignalTracer;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -10,20 +11,27 @@ import java.time.Duration;
 
 @RestController
 public class FluxAndMonoController {
+
+    private SignalTracer signalTracer;
+
+    public FluxAndMonoController(SignalTracer signalTracer) {
+        this.signalTracer = signalTracer;
+    }
+
     @GetMapping("/flux")
     public Flux<Integer> flux(){
-        return Flux.just(15, 06, 24).log();
+        return Flux.just(15, 06, 24).transform(signalTracer.flux("flux"));
     }
 
     @GetMapping("/mono")
     public Mono<Integer> mono(){
-        return Mono.just(15).log();
+        return Mono.just(15).transform(signalTracer.mono("mono"));
     }
 
     //Specifying the MediaType instructs the endpoint to produce a
     //stream of data to the client.
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<Long> stream(){
-        return Flux.interval(Duration.ofSeconds(2)).log();
+        return Flux.interval(Duration.ofSeconds(2)).transform(signalTracer.flux("stream"));
     }
 }
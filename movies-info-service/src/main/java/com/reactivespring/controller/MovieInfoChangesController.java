@@ -0,0 +1,59 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfoChange;
+import com.reactivespring.service.MovieInfoChangeService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/v1")
+public class MovieInfoChangesController {
+
+    private MovieInfoChangeService movieInfoChangeService;
+
+    private Duration heartbeatInterval;
+
+    public MovieInfoChangesController(MovieInfoChangeService movieInfoChangeService,
+                                      @Value("${movieChanges.heartbeatInterval:15s}") Duration heartbeatInterval){
+        this.movieInfoChangeService = movieInfoChangeService;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    //Server sent events for every insert, update and delete of a movie info, used by movies-service to keep its cache
+    //up to date. The event ID is the change stream resume token, so a client that reconnects with the Last-Event-ID
+    //header gets the changes it missed. The heartbeat comments (the first one straight away) let clients tell a
+    //quiet stream from a dead connection. Without a replica set there are no changes to stream, that's a 501 so
+    //clients can tell it from the service being down and stop reconnecting.
+    @GetMapping(value = "/moviechanges", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<MovieInfoChange>> streamMovieInfoChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId){
+        return movieInfoChangeService.isSupported()
+                .flatMapMany(supported -> supported ? streamChanges(lastEventId)
+                        : Flux.error(new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED, "MongoDB isn't a replica set, movie info changes can't be streamed")));
+    }
+
+    private Flux<ServerSentEvent<MovieInfoChange>> streamChanges(String lastEventId){
+        var changes = movieInfoChangeService.changes(lastEventId)
+                .map(change -> ServerSentEvent.builder(change)
+                        .id(change.getResumeToken())
+                        .event(change.getOperation())
+                        .build());
+        var heartbeats = Flux.interval(Duration.ZERO, heartbeatInterval)
+                .map(tick -> ServerSentEvent.<MovieInfoChange>builder().comment("heartbeat").build());
+
+        //the heartbeats stop with the change stream, so the client sees it end and reconnects
+        return changes.publish(sharedChanges -> Flux.merge(sharedChanges,
+                heartbeats.takeUntilOther(sharedChanges.then().onErrorResume(ex -> Mono.empty()).thenReturn(true))));
+    }
+}
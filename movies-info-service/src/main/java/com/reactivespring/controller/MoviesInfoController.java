@@ -1,14 +1,25 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoSearch;
 import com.reactivespring.service.MoviesInfoService;
+import com.reactivespring.util.MovieInfoFields;
+import com.reactivespring.util.PageCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebInputException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/v1")
@@ -17,9 +28,16 @@ public class MoviesInfoController {
     //We can use @Autowired i.e. field injection
     private MoviesInfoService moviesInfoService;
 
+    private Validator validator;
+
+    private int maxPageSize;
+
     //Constructor injecting is preferred over @Autowired
-    public MoviesInfoController(MoviesInfoService moviesInfoService){
+    public MoviesInfoController(MoviesInfoService moviesInfoService, Validator validator,
+                                @Value("${pagination.maxPageSize:500}") int maxPageSize){
         this.moviesInfoService = moviesInfoService;
+        this.validator = validator;
+        this.maxPageSize = maxPageSize;
     }
 
     @PostMapping("/addmovie")
@@ -28,13 +46,113 @@ public class MoviesInfoController {
         return moviesInfoService.addMovieInfo(movieInfo);
     }
 
+    //The movies are returned a page at a time, e.g. /v1/listmovies?limit=50 or /v1/listmovies?year=2005&limit=50. If there
+    //are more movies the X-Next-Cursor header holds the cursor for the next page, e.g. /v1/listmovies?limit=50&cursor=<X-Next-Cursor>
+    //fields= only reads and returns the fields listed, e.g. /v1/listmovies?fields=name,year (the ID is always there).
+    //A name is searched for like the name of /v1/searchmovies, e.g. /v1/listmovies?name=bat&year=2005, up to limit movies.
+    //The search isn't paged, so a cursor along with a name is a 400.
     @GetMapping("/listmovies")
-    public Flux<MovieInfo> listMoviesInfo(@RequestParam(value = "year", required = false) Integer year
-                                          , @RequestParam(value = "name", required = false) String name){
-        if (year != null)
-            return moviesInfoService.findMovieInfoByYear(year);
+    public Mono<ResponseEntity<Flux<MovieInfo>>> listMoviesInfo(@RequestParam(value = "year", required = false) Integer year
+                                          , @RequestParam(value = "name", required = false) String name
+                                          , @RequestParam(value = "limit", defaultValue = "${pagination.defaultPageSize:100}") int limit
+                                          , @RequestParam(value = "cursor", required = false) String cursor
+                                          , @RequestParam(value = "fields", required = false) String fields){
+        List<String> projection;
+        try {
+            projection = MovieInfoFields.parse(fields);
+        } catch (IllegalArgumentException ex) {
+            return Mono.error(new ServerWebInputException(ex.getMessage()));
+        }
+
+        if (limit < 1)
+            return Mono.error(new ServerWebInputException("limit must be greater than 0"));
+
+        if (name != null && !name.isBlank()) {
+            if (cursor != null)
+                return Mono.error(new ServerWebInputException("cursor can't be used with name"));
 
-        return moviesInfoService.listMoviesInfo();
+            var search = new MovieInfoSearch(null, name.trim(), year, null);
+            return Mono.just(ResponseEntity.ok().body(moviesInfoService.searchMoviesInfo(search, Math.min(limit, maxPageSize), projection)));
+        }
+
+        String afterId;
+        try {
+            afterId = cursor == null ? null : PageCursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            return Mono.error(new ServerWebInputException("Invalid cursor: " + cursor));
+        }
+
+        var pageSize = Math.min(limit, maxPageSize);
+        //one extra movie is read to know if there's a next page, the page itself is at most maxPageSize long
+        return moviesInfoService.listMoviesInfo(year, afterId, pageSize + 1, projection)
+                .collectList()
+                .map(movieInfos -> {
+                    if (movieInfos.size() <= pageSize)
+                        return ResponseEntity.ok().body(Flux.fromIterable(movieInfos));
+
+                    var page = movieInfos.subList(0, pageSize);
+                    return ResponseEntity.ok()
+                            .header(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode(page.get(pageSize - 1).getMovieInfoId()))
+                            .body(Flux.fromIterable(page));
+                });
+    }
+
+    //Same movies as /listmovies but streamed one JSON document per line (Accept: application/x-ndjson) or as server
+    //sent events (Accept: text/event-stream) instead of one big array, so clients can start on the first movie straight
+    //away. Nothing is collected here, the Mongo cursor is only read as fast as the client consumes the response.
+    //Only the first limit movies (at most maxPageSize) are streamed, paging goes through the cursor of /listmovies.
+    //Requests accepting application/json or anything (*/*) still go to listMoviesInfo.
+    @GetMapping(value = "/listmovies", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<MovieInfo> streamMoviesInfo(@RequestParam(value = "year", required = false) Integer year
+                                          , @RequestParam(value = "name", required = false) String name
+                                          , @RequestParam(value = "limit", defaultValue = "${pagination.defaultPageSize:100}") int limit
+                                          , @RequestParam(value = "fields", required = false) String fields){
+        if (name != null && !name.isBlank())
+            return searchMoviesInfo(null, name, year, null, limit, fields);
+
+        List<String> projection;
+        try {
+            projection = MovieInfoFields.parse(fields);
+        } catch (IllegalArgumentException ex) {
+            return Flux.error(new ServerWebInputException(ex.getMessage()));
+        }
+
+        if (limit < 1)
+            return Flux.error(new ServerWebInputException("limit must be greater than 0"));
+
+        return moviesInfoService.listMoviesInfo(year, null, Math.min(limit, maxPageSize), projection);
+    }
+
+    //Search box, e.g. /v1/searchmovies?name=bat, /v1/searchmovies?cast=christian&year=2005 or /v1/searchmovies?q=dark+knight.
+    //name and cast are case-insensitive prefixes, q are words of the name or cast, and the filters given are combined.
+    //With q the most relevant movies come first, otherwise they are sorted by name. Nothing is collected here, with
+    //Accept: application/x-ndjson the movies are written one per line as Mongo returns them.
+    @GetMapping("/searchmovies")
+    public Flux<MovieInfo> searchMoviesInfo(@RequestParam(value = "q", required = false) String text
+                                          , @RequestParam(value = "name", required = false) String name
+                                          , @RequestParam(value = "year", required = false) Integer year
+                                          , @RequestParam(value = "cast", required = false) String cast
+                                          , @RequestParam(value = "limit", defaultValue = "${pagination.defaultPageSize:100}") int limit
+                                          , @RequestParam(value = "fields", required = false) String fields){
+        List<String> projection;
+        try {
+            projection = MovieInfoFields.parse(fields);
+        } catch (IllegalArgumentException ex) {
+            return Flux.error(new ServerWebInputException(ex.getMessage()));
+        }
+
+        var search = new MovieInfoSearch(trimToNull(text), trimToNull(name), year, trimToNull(cast));
+        if (search.isEmpty())
+            return Flux.error(new ServerWebInputException("q, name, year or cast is required"));
+
+        if (limit < 1)
+            return Flux.error(new ServerWebInputException("limit must be greater than 0"));
+
+        return moviesInfoService.searchMoviesInfo(search, Math.min(limit, maxPageSize), projection);
+    }
+
+    private static String trimToNull(String param){
+        return param == null || param.isBlank() ? null : param.trim();
     }
 
     @GetMapping("/listmoviesbyname")
@@ -42,15 +160,49 @@ public class MoviesInfoController {
         return moviesInfoService.findMovieInfoByName(name);
     }
 
+    //The ETag is the version of the movie. A client sending it back in If-None-Match gets a 304 without a body
+    //while the movie is unchanged (the 304 itself is done by ResponseEntityResultHandler).
+    //With fields= the version is read even if it isn't asked for, the ETag is the same for every projection.
+    //JSON and Smile share the ETag too, Vary: Accept keeps caches from handing one out for the other.
     @GetMapping("/findmovie/{id}")
-    public Mono<ResponseEntity<MovieInfo>> findMovieInfoById(@PathVariable String id){
-        return moviesInfoService.findMovieInfoById(id)
+    public Mono<ResponseEntity<MovieInfo>> findMovieInfoById(@PathVariable String id
+                                          , @RequestParam(value = "fields", required = false) String fields){
+        List<String> projection;
+        try {
+            projection = MovieInfoFields.parse(fields);
+        } catch (IllegalArgumentException ex) {
+            return Mono.error(new ServerWebInputException(ex.getMessage()));
+        }
+        if (projection != null && !projection.contains("version"))
+            projection.add("version");
+
+        return moviesInfoService.findMovieInfoById(id, projection)
                 .map(movieInfo -> {
-                    return ResponseEntity.ok().body(movieInfo);
+                    if (movieInfo.getVersion() == null)
+                        return ResponseEntity.ok().body(movieInfo);
+
+                    return ResponseEntity.ok()
+                            .eTag(String.valueOf(movieInfo.getVersion()))
+                            .varyBy(HttpHeaders.ACCEPT)
+                            .body(movieInfo);
                 })
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
     }
 
+    //Bulk lookup used by movies-service to build many movies with a single call, e.g. /v1/findmovies?ids=1,2,3
+    @GetMapping("/findmovies")
+    public Flux<MovieInfo> findMovieInfoByIds(@RequestParam(value = "ids") List<String> ids
+                                          , @RequestParam(value = "fields", required = false) String fields){
+        List<String> projection;
+        try {
+            projection = MovieInfoFields.parse(fields);
+        } catch (IllegalArgumentException ex) {
+            return Flux.error(new ServerWebInputException(ex.getMessage()));
+        }
+
+        return moviesInfoService.findMovieInfoByIds(ids, projection);
+    }
+
     @PutMapping("/updatemovieinfo/{id}")
     public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@RequestBody @Valid MovieInfo updatedMovieInfo, @PathVariable String id){
         return moviesInfoService.updateMovieInfo(updatedMovieInfo, id)
@@ -60,6 +212,24 @@ public class MoviesInfoController {
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
     }
 
+    //Partial update, only the fields sent are changed, e.g. {"imdbRating": 8.1}. With the version of the movie in the
+    //body, e.g. {"imdbRating": 8.1, "version": 3}, the update fails with a 409 if someone else updated it in between.
+    @PatchMapping("/updatemovieinfo/{id}")
+    public Mono<ResponseEntity<MovieInfo>> patchMovieInfo(@RequestBody MovieInfo patch, @PathVariable String id){
+        //@Valid would reject the fields that aren't sent, so only the violations of the fields sent count
+        var errorMessage = validator.validate(patch).stream()
+                .filter(violation -> violation.getInvalidValue() != null)
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(","));
+        if (!errorMessage.isEmpty())
+            return Mono.error(new ServerWebInputException(errorMessage));
+
+        return moviesInfoService.patchMovieInfo(patch, id)
+                .map(movieInfo -> ResponseEntity.ok().body(movieInfo))
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+    }
+
     @DeleteMapping("/deletemovieinfo/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<Void> deleteMovieInfo(@PathVariable String id){
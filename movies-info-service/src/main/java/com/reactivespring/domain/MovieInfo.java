@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
@@ -17,6 +19,8 @@ import java.util.List;
 @AllArgsConstructor
 @Document//This is like an entity in RDBMS, 'Document' is a term used in MongoDB.
 //Each entity is a Document in MongoDB as each resource is created as a Document in MongoDB.
+//the movies of a year paged on _id, the case-insensitive name index is created in MongoIndexInitializer
+@CompoundIndex(name = "year_id", def = "{'year': 1, '_id': 1}")
 public class MovieInfo {
 
     @Id
@@ -36,4 +40,13 @@ public class MovieInfo {
 
     @Positive(message = "IMDb rating can't be less than 0")
     private Double IMDbRating;
+
+    //Optimistic locking, incremented by every update. An update sent with the version the client read fails with
+    //a 409 if the movie has been changed since.
+    @Version
+    private Long version;
+
+    public MovieInfo(String movieInfoId, String name, List<String> cast, LocalDate releaseDate, Integer year, Double IMDbRating) {
+        this(movieInfoId, name, cast, releaseDate, year, IMDbRating, null);
+    }
 }
@@ -0,0 +1,31 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//A change to the movieInfo collection, streamed by /v1/moviechanges
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoChange {
+
+    public static final String RESET = "reset";
+
+    //resumes the change stream after this change, it's also the ID of the server sent event
+    private String resumeToken;
+
+    private String movieInfoId;
+
+    //insert, update, replace or delete, or reset if changes may have been missed
+    private String operation;
+
+    //the movie as it is after the change, null for a delete
+    private MovieInfo movieInfo;
+
+    //The changes since the Last-Event-ID can't be sent (e.g. they are no longer in the oplog), so the client has to
+    //drop everything it knows about the movies
+    public static MovieInfoChange reset() {
+        return new MovieInfoChange(null, null, RESET, null);
+    }
+}
@@ -0,0 +1,27 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//The filters of /v1/searchmovies, the ones that aren't null are combined (and)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoSearch {
+
+    //words looked up in the text index on name and cast, the results are sorted by relevance
+    private String text;
+
+    //case-insensitive prefix of the name, e.g. "bat" for Batman Begins
+    private String name;
+
+    private Integer year;
+
+    //case-insensitive prefix of one of the cast, e.g. "christian" for Christian Bale
+    private String cast;
+
+    public boolean isEmpty() {
+        return text == null && name == null && year == null && cast == null;
+    }
+}
@@ -2,6 +2,8 @@ package com.reactivespring.exceptionhandler;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -26,4 +28,12 @@ public class GlobalExceptionHandler {
         log.error("Server error: {}", error);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
+
+    //an update with a version the movie isn't at anymore (PATCH), a concurrent update between the findById and
+    //the save of a PUT, or a POST with the ID of a movie that already exists
+    @ExceptionHandler({OptimisticLockingFailureException.class, DuplicateKeyException.class})
+    public ResponseEntity<String> handleOptimisticLockingFailure(RuntimeException exception){
+        log.info("Conflicting update: {}", exception.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(exception.getMessage());
+    }
 }
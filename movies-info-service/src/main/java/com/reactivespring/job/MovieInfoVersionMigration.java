@@ -0,0 +1,51 @@
+package com.reactivespring.job;
+
+import com.reactivespring.domain.MovieInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+//One-off migration of the movie infos saved before MovieInfo had a version: save() takes a document without a
+//version for a new one and would fail to insert it again, so they are given version 0. Documents that have a version
+//don't match the filter, so running it again only picks up what's left.
+//Opt-in with migration.movieInfoVersion.enabled, for the start of a single instance after the upgrade.
+@Component
+@ConditionalOnProperty(name = "migration.movieInfoVersion.enabled", havingValue = "true")
+@Slf4j
+public class MovieInfoVersionMigration {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Value("${migration.movieInfoVersion.timeout:30m}")
+    private Duration timeout;
+
+    public MovieInfoVersionMigration(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        var start = System.nanoTime();
+        var migrated = migrateMovieInfos().block(timeout);
+
+        if (migrated != null && migrated > 0)
+            log.info("Version 0 given to {} movie infos in {} ms", migrated, Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    //emits the number of movie infos migrated
+    Mono<Long> migrateMovieInfos() {
+        return reactiveMongoTemplate.updateMulti(Query.query(Criteria.where("version").exists(false)),
+                        new Update().set("version", 0L), MovieInfo.class)
+                .map(result -> result.getModifiedCount());
+    }
+}
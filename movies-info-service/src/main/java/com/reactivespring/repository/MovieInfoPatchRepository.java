@@ -0,0 +1,13 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import reactor.core.publisher.Mono;
+
+//Custom fragment of MovieInfoRepository, implemented in MovieInfoPatchRepositoryImpl
+public interface MovieInfoPatchRepository {
+
+    //Sets the non-null fields of the patch (but the ID) on the movie and increments its version, in a single
+    //findAndModify. If the patch has a version only the movie with that version is updated. Emits the updated
+    //movie, or nothing if there's no movie with that ID (and version).
+    Mono<MovieInfo> patch(String movieInfoId, MovieInfo patch);
+}
@@ -0,0 +1,40 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+public class MovieInfoPatchRepositoryImpl implements MovieInfoPatchRepository {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public MovieInfoPatchRepositoryImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<MovieInfo> patch(String movieInfoId, MovieInfo patch) {
+        var criteria = Criteria.where("movieInfoId").is(movieInfoId);
+        if (patch.getVersion() != null)
+            criteria.and("version").is(patch.getVersion());
+
+        var update = new Update().inc("version", 1);//$inc on a movie saved before the version existed sets it to 1
+        setIfPresent(update, "name", patch.getName());
+        setIfPresent(update, "cast", patch.getCast());
+        setIfPresent(update, "releaseDate", patch.getReleaseDate());
+        setIfPresent(update, "year", patch.getYear());
+        setIfPresent(update, "IMDbRating", patch.getIMDbRating());
+
+        return reactiveMongoTemplate.findAndModify(Query.query(criteria), update,
+                FindAndModifyOptions.options().returnNew(true), MovieInfo.class);
+    }
+
+    private static void setIfPresent(Update update, String field, Object value) {
+        if (value != null)
+            update.set(field, value);
+    }
+}
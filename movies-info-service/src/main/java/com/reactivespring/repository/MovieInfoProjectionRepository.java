@@ -0,0 +1,23 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+//Custom fragment of MovieInfoRepository, implemented in MovieInfoProjectionRepositoryImpl. The reads of the
+//endpoints taking a fields= parameter, only those fields (see MovieInfoFields) and the _id are read from Mongo.
+//With null fields the whole documents are read.
+public interface MovieInfoProjectionRepository {
+
+    Mono<MovieInfo> findByMovieInfoId(String movieInfoId, Collection<String> fields);
+    Flux<MovieInfo> findByMovieInfoIdIn(Collection<String> movieInfoIds, Collection<String> fields);
+
+    //Keyset pagination on _id, the Pageable carries the page size and the sort on _id. The movies of a year are
+    //paged the same way on the year_id index, a null year pages through all the movies.
+    Flux<MovieInfo> findPage(Integer year, Pageable pageable, Collection<String> fields);
+    Flux<MovieInfo> findPageAfter(Integer year, String movieInfoId, Pageable pageable, Collection<String> fields);//_id > movieInfoId
+    Flux<MovieInfo> findPageFrom(Integer year, String movieInfoId, Pageable pageable, Collection<String> fields);//_id >= movieInfoId
+}
@@ -0,0 +1,74 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.ProjectedMovieInfo;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public class MovieInfoProjectionRepositoryImpl implements MovieInfoProjectionRepository {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public MovieInfoProjectionRepositoryImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<MovieInfo> findByMovieInfoId(String movieInfoId, Collection<String> fields) {
+        return reactiveMongoTemplate.findOne(project(Query.query(Criteria.where("movieInfoId").is(movieInfoId)), fields),
+                readAs(fields), reactiveMongoTemplate.getCollectionName(MovieInfo.class)).cast(MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findByMovieInfoIdIn(Collection<String> movieInfoIds, Collection<String> fields) {
+        return find(Query.query(Criteria.where("movieInfoId").in(movieInfoIds)), fields);
+    }
+
+    @Override
+    public Flux<MovieInfo> findPage(Integer year, Pageable pageable, Collection<String> fields) {
+        return find(inYear(year).with(pageable), fields);
+    }
+
+    @Override
+    public Flux<MovieInfo> findPageAfter(Integer year, String movieInfoId, Pageable pageable, Collection<String> fields) {
+        return find(inYear(year).addCriteria(Criteria.where("movieInfoId").gt(movieInfoId)).with(pageable), fields);
+    }
+
+    @Override
+    public Flux<MovieInfo> findPageFrom(Integer year, String movieInfoId, Pageable pageable, Collection<String> fields) {
+        return find(inYear(year).addCriteria(Criteria.where("movieInfoId").gte(movieInfoId)).with(pageable), fields);
+    }
+
+    private static Query inYear(Integer year) {
+        var query = new Query();
+        if (year != null)
+            query.addCriteria(Criteria.where("year").is(year));
+        return query;
+    }
+
+    private Flux<MovieInfo> find(Query query, Collection<String> fields) {
+        return reactiveMongoTemplate.find(project(query, fields), readAs(fields), reactiveMongoTemplate.getCollectionName(MovieInfo.class))
+                .cast(MovieInfo.class);
+    }
+
+    //a projected movie info doesn't write the fields that weren't read as nulls
+    static Class<? extends MovieInfo> readAs(Collection<String> fields) {
+        return fields != null ? ProjectedMovieInfo.class : MovieInfo.class;
+    }
+
+    //the property names are mapped to the document fields like in the criteria, e.g. movieInfoId to _id. The _id is
+    //included explicitly, an empty projection would read the whole document.
+    private static Query project(Query query, Collection<String> fields) {
+        if (fields != null) {
+            query.fields().include("movieInfoId");
+            fields.forEach(field -> query.fields().include(field));
+        }
+        return query;
+    }
+}
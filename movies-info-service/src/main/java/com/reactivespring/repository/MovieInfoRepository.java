@@ -1,12 +1,15 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String> {
+public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String>, MovieInfoPatchRepository,
+        MovieInfoProjectionRepository, MovieInfoSearchRepository {
 
     Flux<MovieInfo> findByYear(Integer year);
+    @Query(collation = "{ 'locale' : 'en', 'strength' : 2 }")//case-insensitive, same collation as the name index
     Mono<MovieInfo> findByName(String name);
 }
@@ -0,0 +1,16 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoSearch;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+//Custom fragment of MovieInfoRepository, implemented in MovieInfoSearchRepositoryImpl
+public interface MovieInfoSearchRepository {
+
+    //Up to 'limit' movies matching all the filters of the search, read with the indexes of MongoIndexInitializer.
+    //With text the most relevant movies come first, otherwise they are sorted by name. The fields are the properties
+    //to read like in MovieInfoProjectionRepository, null for all of them.
+    Flux<MovieInfo> search(MovieInfoSearch search, int limit, Collection<String> fields);
+}
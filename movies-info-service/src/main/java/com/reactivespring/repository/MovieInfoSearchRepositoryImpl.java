@@ -0,0 +1,73 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.config.MongoIndexInitializer;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoSearch;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+public class MovieInfoSearchRepositoryImpl implements MovieInfoSearchRepository {
+
+    //ICU sorts U+FFFF after every other character, so prefix <= value < prefix + U+FFFF matches the values
+    //starting with the prefix whatever character comes next
+    private static final String AFTER_PREFIX = "\uFFFF";
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public MovieInfoSearchRepositoryImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Flux<MovieInfo> search(MovieInfoSearch search, int limit, Collection<String> fields) {
+        var query = search.getText() != null ? textQuery(search) : prefixQuery(search);
+        query.limit(limit);
+        if (fields != null) {
+            query.fields().include("movieInfoId");
+            fields.forEach(field -> query.fields().include(field));
+        }
+        return reactiveMongoTemplate.find(query, MovieInfoProjectionRepositoryImpl.readAs(fields), reactiveMongoTemplate.getCollectionName(MovieInfo.class))
+                .cast(MovieInfo.class);
+    }
+
+    //The prefixes are ranges on the name_ci/cast_ci indexes, which compare case-insensitively with NAME_COLLATION.
+    //A range on an array has to be in an $elemMatch, otherwise its bounds can be met by two different cast members.
+    private static Query prefixQuery(MovieInfoSearch search) {
+        var criteria = new Criteria();
+        if (search.getName() != null)
+            criteria.and("name").gte(search.getName()).lt(search.getName() + AFTER_PREFIX);
+        if (search.getYear() != null)
+            criteria.and("year").is(search.getYear());
+        if (search.getCast() != null)
+            criteria.and("cast").elemMatch(new Criteria().gte(search.getCast()).lt(search.getCast() + AFTER_PREFIX));
+
+        return Query.query(criteria)
+                .collation(MongoIndexInitializer.NAME_COLLATION)
+                .with(Sort.by("name"));
+    }
+
+    //A text index doesn't take a collation, so the query can't have one either. The text index narrows the movies
+    //down and the prefixes are checked on those with case-insensitive regexes.
+    private static Query textQuery(MovieInfoSearch search) {
+        var query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(search.getText())).sortByScore();
+        if (search.getName() != null)
+            query.addCriteria(Criteria.where("name").regex(startsWith(search.getName())));
+        if (search.getYear() != null)
+            query.addCriteria(Criteria.where("year").is(search.getYear()));
+        if (search.getCast() != null)
+            query.addCriteria(Criteria.where("cast").regex(startsWith(search.getCast())));
+        return query;
+    }
+
+    private static Pattern startsWith(String prefix) {
+        return Pattern.compile("^" + Pattern.quote(prefix), Pattern.CASE_INSENSITIVE);
+    }
+}
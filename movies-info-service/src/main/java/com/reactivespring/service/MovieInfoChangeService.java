@@ -0,0 +1,90 @@
+package com.reactivespring.service;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.regex.Pattern;
+
+//Watches the movieInfo collection with a MongoDB change stream, which needs a replica set (a single node one is enough)
+@Service
+@Slf4j
+public class MovieInfoChangeService {
+
+    private static final Pattern RESUME_TOKEN = Pattern.compile("[0-9A-Fa-f]+");
+
+    //InvalidResumeToken, ChangeStreamFatalError and ChangeStreamHistoryLost
+    private static final Set<Integer> RESUME_FAILURE_CODES = Set.of(260, 280, 286);
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public MovieInfoChangeService(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    //Change streams need a replica set (setName) or a sharded cluster (isdbgrid), a standalone mongod rejects them
+    public Mono<Boolean> isSupported() {
+        return reactiveMongoTemplate.executeCommand(new Document("isMaster", 1))
+                .map(isMaster -> isMaster.containsKey("setName") || "isdbgrid".equals(isMaster.get("msg")));
+    }
+
+    //The changes after the one with the given resume token, or from now on if it's null. If the stream can't be
+    //resumed a reset is sent first and the changes from now on follow.
+    public Flux<MovieInfoChange> changes(String resumeToken) {
+        if (resumeToken == null)
+            return watch(null);
+
+        if (!RESUME_TOKEN.matcher(resumeToken).matches())
+            return resetAndWatch(resumeToken);
+
+        return watch(new BsonDocument("_data", new BsonString(resumeToken)))
+                .onErrorResume(MovieInfoChangeService::isResumeFailure, ex -> resetAndWatch(resumeToken));
+    }
+
+    private Flux<MovieInfoChange> resetAndWatch(String resumeToken) {
+        log.warn("Change stream can't be resumed after {}, sending a reset", resumeToken);
+        return Flux.concat(Mono.just(MovieInfoChange.reset()), watch(null));
+    }
+
+    private Flux<MovieInfoChange> watch(BsonValue resumeToken) {
+        //UPDATE_LOOKUP adds the whole movie to update events, so clients don't need to fetch it
+        var options = ChangeStreamOptions.builder().fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+        if (resumeToken != null)
+            options.resumeAfter(resumeToken);
+
+        return reactiveMongoTemplate.changeStream(reactiveMongoTemplate.getCollectionName(MovieInfo.class),
+                        options.build(), MovieInfo.class)
+                .filter(event -> event.getRaw() != null && event.getRaw().getDocumentKey() != null)//e.g. drop or invalidate
+                .map(MovieInfoChangeService::toMovieInfoChange);
+    }
+
+    private static MovieInfoChange toMovieInfoChange(ChangeStreamEvent<MovieInfo> event) {
+        var id = event.getRaw().getDocumentKey().get("_id");
+        //generated IDs are stored as ObjectIds, the ones given by the client as strings
+        var movieInfoId = id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+
+        return new MovieInfoChange(event.getResumeToken().asDocument().getString("_data").getValue(),
+                movieInfoId, event.getOperationType().getValue(), event.getBody());
+    }
+
+    private static boolean isResumeFailure(Throwable ex) {
+        for (var cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException && RESUME_FAILURE_CODES.contains(((MongoException) cause).getCode()))
+                return true;
+        }
+        return false;
+    }
+}
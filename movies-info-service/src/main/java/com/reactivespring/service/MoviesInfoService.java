@@ -1,14 +1,24 @@
 package com.reactivespring.service;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoSearch;
 import com.reactivespring.repository.MovieInfoRepository;
+import org.bson.types.ObjectId;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @Service
 public class MoviesInfoService {
 
+    //Smallest possible ObjectId, every generated ID is greater than or equal to it
+    private static final String MIN_OBJECT_ID = "000000000000000000000000";
+
     private MovieInfoRepository movieInfoRepository;
 
     public MoviesInfoService(MovieInfoRepository movieInfoRepository){
@@ -19,12 +29,31 @@ public class MoviesInfoService {
         return movieInfoRepository.save(movieInfo);
     }
 
-    public Flux<MovieInfo> listMoviesInfo() {
-        return movieInfoRepository.findAll();
+    //Returns up to 'limit' movies sorted by ID, starting after 'afterId' (or from the start if it's null), only the
+    //movies of the year unless it's null. fields are the properties to read (see MovieInfoFields), null for all of
+    //them, the same goes for the finds below.
+    public Flux<MovieInfo> listMoviesInfo(Integer year, String afterId, int limit, List<String> fields) {
+        var page = PageRequest.of(0, limit, Sort.by("movieInfoId"));
+        if (afterId == null)
+            return movieInfoRepository.findPage(year, page, fields);
+
+        if (ObjectId.isValid(afterId))
+            return movieInfoRepository.findPageAfter(year, afterId, page, fields);
+
+        //IDs given by the client (e.g. "MIS001") are stored as strings and generated ones as ObjectIds. Mongo sorts
+        //all the strings before the ObjectIds and $gt only matches values of the same type, so after a string ID
+        //we read the remaining strings and then carry on with the ObjectIds.
+        return Flux.concat(movieInfoRepository.findPageAfter(year, afterId, page, fields),
+                        movieInfoRepository.findPageFrom(year, MIN_OBJECT_ID, page, fields))
+                .take(limit);
     }
 
-    public Mono<MovieInfo> findMovieInfoById(String id) {
-        return movieInfoRepository.findById(id);
+    public Mono<MovieInfo> findMovieInfoById(String id, List<String> fields) {
+        return movieInfoRepository.findByMovieInfoId(id, fields);
+    }
+
+    public Flux<MovieInfo> findMovieInfoByIds(List<String> ids, List<String> fields) {
+        return movieInfoRepository.findByMovieInfoIdIn(ids, fields);//single $in query instead of one query per ID
     }
 
     public Mono<MovieInfo> updateMovieInfo(MovieInfo updatedMovieInfo, String id) {
@@ -39,12 +68,28 @@ public class MoviesInfoService {
                 });//flatMap is used as the save() will return a reactive type
     }
 
+    //Updates only the fields sent, in one round trip instead of the findById and save of updateMovieInfo. Empty if
+    //there's no movie with that ID, an OptimisticLockingFailureException if the patch has a version and the movie
+    //has been updated since (the extra existsById is only on that path).
+    public Mono<MovieInfo> patchMovieInfo(MovieInfo patch, String id) {
+        return movieInfoRepository.patch(id, patch)
+                .switchIfEmpty(Mono.defer(() -> {
+                    if (patch.getVersion() == null)
+                        return Mono.empty();
+
+                    return movieInfoRepository.existsById(id)
+                            .flatMap(exists -> exists
+                                    ? Mono.error(new OptimisticLockingFailureException("Movie " + id + " isn't at version " + patch.getVersion() + " anymore"))
+                                    : Mono.empty());
+                }));
+    }
+
     public Mono<Void> deleteMovieInfo(String id) {
         return movieInfoRepository.deleteById(id);
     }
 
-    public Flux<MovieInfo> findMovieInfoByYear(Integer year){
-        return movieInfoRepository.findByYear(year);
+    public Flux<MovieInfo> searchMoviesInfo(MovieInfoSearch search, int limit, List<String> fields){
+        return movieInfoRepository.search(search, limit, fields);
     }
 
     public Mono<MovieInfo> findMovieInfoByName(String name){
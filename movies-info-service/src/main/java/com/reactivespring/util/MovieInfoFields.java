@@ -0,0 +1,42 @@
+package com.reactivespring.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//The fields= parameter of the movie info endpoints, e.g. fields=name,year,imdbRating. The JSON names are mapped to
+//the MovieInfo properties the Mongo projection is made of, the _id is always read on top of them.
+public final class MovieInfoFields {
+
+    private static final Map<String, String> PROPERTIES = Map.of(
+            "movieInfoId", "movieInfoId",
+            "name", "name",
+            "cast", "cast",
+            "releaseDate", "releaseDate",
+            "year", "year",
+            "imdbRating", "IMDbRating",
+            "version", "version");
+
+    private MovieInfoFields(){
+    }
+
+    //null (all the fields) without a fields= parameter, throws IllegalArgumentException for an unknown field
+    public static List<String> parse(String fields){
+        if (fields == null)
+            return null;
+
+        var properties = new ArrayList<String>();
+        for (var field : fields.split(",")) {
+            var name = field.trim();
+            if (name.isEmpty())
+                continue;
+
+            var property = PROPERTIES.get(name);
+            if (property == null)
+                throw new IllegalArgumentException("Unknown field: " + name);
+
+            properties.add(property);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,28 @@
+package com.reactivespring.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+//Opaque keyset cursor returned in the X-Next-Cursor header. It wraps the _id of the last document of a page,
+//so clients can't build one themselves and we can change what's inside it later.
+public final class PageCursor {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private PageCursor(){
+    }
+
+    public static String encode(String lastId){
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //throws IllegalArgumentException if the cursor wasn't issued by us
+    public static String decode(String cursor){
+        var lastId = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (lastId.isBlank())
+            throw new IllegalArgumentException("Empty cursor");
+
+        return lastId;
+    }
+}
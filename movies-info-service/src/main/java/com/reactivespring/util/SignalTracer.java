@@ -0,0 +1,59 @@
+package com.reactivespring.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+//Replacement for .log() in the pipelines, used with transform(), e.g. flux.transform(signalTracer.flux("stream")). It logs every signal (onSubscribe, request, onNext, onComplete, cancel...)
+//of 1 in sampleRate subscriptions, and none when it's disabled. Can be switched at runtime with the
+///actuator/signaltracing endpoint. The signals are logged under reactor.signals.<name>, which logback-spring.xml
+//writes through an async appender so the event loop doesn't wait for the console.
+@Component
+public class SignalTracer {
+
+    public static final String CATEGORY_PREFIX = "reactor.signals.";
+
+    private final AtomicLong subscriptions = new AtomicLong();
+
+    private volatile boolean enabled;
+    private volatile int sampleRate;
+
+    public SignalTracer(@Value("${signalTracing.enabled:false}") boolean enabled,
+                        @Value("${signalTracing.sampleRate:100}") int sampleRate) {
+        configure(enabled, sampleRate);
+    }
+
+    //whether to trace is decided per subscription, so the same Flux can be traced for one request and not the next
+    public <T> Function<Flux<T>, Flux<T>> flux(String name) {
+        return flux -> flux.transformDeferred(source -> sampled() ? source.log(CATEGORY_PREFIX + name, Level.INFO) : source);
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> mono(String name) {
+        return mono -> mono.transformDeferred(source -> sampled() ? source.log(CATEGORY_PREFIX + name, Level.INFO) : source);
+    }
+
+    private boolean sampled() {
+        return enabled && subscriptions.getAndIncrement() % sampleRate == 0;
+    }
+
+    public void configure(boolean enabled, int sampleRate) {
+        if (sampleRate < 1)
+            throw new IllegalArgumentException("signalTracing.sampleRate must be at least 1, was " + sampleRate);
+
+        this.sampleRate = sampleRate;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+}
@@ -0,0 +1,42 @@
+package com.reactivespring.config;
+
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@ActiveProfiles("test")
+@Import(MongoIndexInitializer.class)
+@TestPropertySource(properties = "mongodb.indexes.failOnCollectionScan=true")//the context fails to start on a collection scan
+class MongoIndexInitializerIntgTest {
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @Test
+    void testIndexesCreated() {
+        var indexes = mongoTemplate.indexOps(MovieInfo.class).getIndexInfo()
+                .collectMap(IndexInfo::getName)
+                .block();
+
+        assertNotNull(indexes);
+        assertTrue(indexes.get("year_id").isIndexForFields(List.of("year", "_id")));
+        assertTrue(indexes.get("name_ci").isIndexForFields(List.of("name")));
+        assertEquals(2, indexes.get("name_ci").getCollation()
+                .map(collation -> collation.get("strength"))
+                .orElse(null));
+        assertTrue(indexes.get("cast_ci").isIndexForFields(List.of("cast")));
+        assertTrue(indexes.get("name_cast_text").getIndexFields().stream().allMatch(IndexField::isText));
+    }
+}
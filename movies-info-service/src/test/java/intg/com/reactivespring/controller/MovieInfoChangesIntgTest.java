@@ -0,0 +1,106 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//change streams need a replica set, the embedded MongoDB is started as a single node one
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient(timeout = "30s")
+@TestPropertySource(properties = "spring.mongodb.embedded.storage.repl-set-name=rs0")
+class MovieInfoChangesIntgTest {
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    private static final ParameterizedTypeReference<ServerSentEvent<MovieInfoChange>> CHANGE_EVENT =
+            new ParameterizedTypeReference<>() {};
+
+    private final MovieInfo movieInfo = new MovieInfo("MIS001", "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+            LocalDate.parse("2013-08-02"), 2013, 7.5);
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void testMovieInfoChangesResumeAfterLastEventId() {
+        movieInfoRepository.save(movieInfo).block();
+
+        //the changes are made once the change stream has had time to open
+        var changes = Mono.delay(Duration.ofSeconds(1))
+                .then(Mono.defer(() -> {
+                    movieInfo.setIMDbRating(7.6);
+                    return movieInfoRepository.save(movieInfo);
+                }))
+                .then(movieInfoRepository.deleteById("MIS001"));
+
+        var events = changeEvents(null)
+                .take(2)
+                .collectList()
+                .zipWith(changes.then(Mono.just(true)), (received, done) -> received)
+                .block(Duration.ofSeconds(20));
+
+        assertEquals("update", events.get(0).event());
+        assertEquals("MIS001", events.get(0).data().getMovieInfoId());
+        assertEquals(7.6, events.get(0).data().getMovieInfo().getIMDbRating());
+        assertEquals("delete", events.get(1).event());
+
+        //a client that got the update and then lost the connection gets the delete again
+        StepVerifier.create(changeEvents(events.get(0).id()).take(1))
+                .assertNext(event -> {
+                    assertEquals("delete", event.event());
+                    assertEquals(events.get(1).id(), event.id());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testMovieInfoChangesInvalidLastEventId() {
+        StepVerifier.create(changeEvents("not-a-resume-token").take(1))
+                .assertNext(event -> assertEquals(MovieInfoChange.RESET, event.event()))
+                .verifyComplete();
+    }
+
+    private Flux<ServerSentEvent<MovieInfoChange>> changeEvents(String lastEventId) {
+        return webTestClient
+                .get()
+                .uri("/v1/moviechanges")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .headers(headers -> {
+                    if (lastEventId != null)
+                        headers.set("Last-Event-ID", lastEventId);
+                })
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(CHANGE_EVENT)
+                .getResponseBody()
+                .filter(event -> event.data() != null);
+    }
+}
@@ -2,6 +2,7 @@ package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.util.PageCursor;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,7 +14,11 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -83,6 +88,35 @@ class MoviesInfoControllerIntgTest {
                 .hasSize(3);
     }
 
+    @Test
+    void testListMoviesInfoPages() {
+        //"MIS001" is stored as a string and the other two IDs as ObjectIds, the pages have to go across both
+        var movieIds = new ArrayList<String>();
+        String cursor = null;
+        do {
+            var uri = UriComponentsBuilder.fromUriString(MOVIES_INFO_SERVICE_URL + "/listmovies")
+                    .queryParam("limit", 2);
+            if (cursor != null)
+                uri.queryParam("cursor", cursor);
+
+            var result = webTestClient
+                    .get()
+                    .uri(uri.buildAndExpand().toUri())
+                    .exchange()
+                    .expectStatus()
+                    .is2xxSuccessful()
+                    .expectBodyList(MovieInfo.class)
+                    .returnResult();
+
+            result.getResponseBody().forEach(movieInfo -> movieIds.add(movieInfo.getMovieInfoId()));
+            cursor = result.getResponseHeaders().getFirst(PageCursor.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+
+        assertEquals(3, movieIds.size());
+        assertEquals(3, Set.copyOf(movieIds).size());
+        assertEquals("MIS001", movieIds.get(0));
+    }
+
     @Test
     void testListMoviesInfoByYear() {
 
@@ -117,6 +151,42 @@ class MoviesInfoControllerIntgTest {
                 .hasSize(1);
     }
 
+    @Test
+    void testSearchMoviesInfo() {
+        //case-insensitive prefixes of the name and of one of the cast
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/searchmovies?name=forr")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> {
+                    assertEquals(1, movieInfos.size());
+                    assertEquals("Forrest Gump", movieInfos.get(0).getName());
+                });
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/searchmovies?cast=VERA&year=2013")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertEquals(List.of("MIS001"),
+                        movieInfos.stream().map(MovieInfo::getMovieInfoId).collect(Collectors.toList())));
+
+        //a word of the name in the text index
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/searchmovies?q=conjuring")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
     @Test
     void testFindMovieInfoById() {
 
@@ -196,6 +266,36 @@ class MoviesInfoControllerIntgTest {
                 .isNotFound();
     }
 
+    @Test
+    void testPatchMovieInfo() {
+        var movieId = "MIS001";
+
+        webTestClient
+                .patch()
+                .uri(MOVIES_INFO_SERVICE_URL + "/updatemovieinfo/{id}", movieId)
+                .bodyValue(Map.of("imdbRating", 7.6, "version", 0))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    var patchedMovieInfo = movieInfoEntityExchangeResult.getResponseBody();
+                    assertNotNull(patchedMovieInfo);
+                    assertEquals(7.6, patchedMovieInfo.getIMDbRating());
+                    assertEquals("The Conjuring", patchedMovieInfo.getName());//the fields that weren't sent are kept
+                    assertEquals(1L, patchedMovieInfo.getVersion());
+                });
+
+        //the movie isn't at version 0 anymore
+        webTestClient
+                .patch()
+                .uri(MOVIES_INFO_SERVICE_URL + "/updatemovieinfo/{id}", movieId)
+                .bodyValue(Map.of("imdbRating", 7.7, "version", 0))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+    }
+
     @Test
     void testDeleteMovieInfo() {
         var deletedMovieId = "MIS001";
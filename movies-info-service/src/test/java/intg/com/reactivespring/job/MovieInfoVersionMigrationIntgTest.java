@@ -0,0 +1,54 @@
+package com.reactivespring.job;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "migration.movieInfoVersion.enabled=true")
+class MovieInfoVersionMigrationIntgTest {
+
+    @Autowired
+    MovieInfoVersionMigration migration;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void testMigrateMovieInfos() {
+        //movie infos as they were saved before MovieInfo had a version, and one saved since
+        reactiveMongoTemplate.insert(List.of(
+                new Document("_id", "m1").append("name", "Batman Begins").append("year", 2005),
+                new Document("_id", "m2").append("name", "The Dark Knight").append("year", 2008),
+                new Document("_id", "m3").append("name", "Dark Knight Rises").append("year", 2012).append("version", 3L)),
+                reactiveMongoTemplate.getCollectionName(MovieInfo.class)).blockLast();
+
+        assertEquals(2L, migration.migrateMovieInfos().block());
+
+        assertEquals(0L, movieInfoRepository.findById("m1").block().getVersion());
+        assertEquals(3L, movieInfoRepository.findById("m3").block().getVersion());
+
+        //nothing left to migrate
+        assertEquals(0L, migration.migrateMovieInfos().block());
+    }
+}
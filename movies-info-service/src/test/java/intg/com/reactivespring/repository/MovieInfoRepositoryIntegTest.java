@@ -71,6 +71,15 @@ class MovieInfoRepositoryIntegTest {
                 .verifyComplete();
     }
 
+    @Test
+    void testFindByNameIgnoresCase(){
+        var movieInfoMono = movieInfoRepository.findByName("the conjuring");
+
+        StepVerifier.create(movieInfoMono)
+                .assertNext(movieInfo -> assertEquals("MIS001", movieInfo.getMovieInfoId()))
+                .verifyComplete();
+    }
+
     @Test
     void testSaveMovieInfo(){
         var newMovie = new MovieInfo(null, "12th Fail", List.of("Vikrant Massey", "Medha Shankr", "Anant Joshi"),
@@ -1,9 +1,11 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.util.SignalTracer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
@@ -16,6 +18,7 @@ import static org.junit.jupiter.api.Assertions.*;
 //and make all the endpoints defined in the controller available.
 @AutoConfigureWebTestClient//Ensures that the TestClient instance is automatically
     //injected into this class.
+@Import(SignalTracer.class)
 class FluxAndMonoControllerTest {
 
     @Autowired
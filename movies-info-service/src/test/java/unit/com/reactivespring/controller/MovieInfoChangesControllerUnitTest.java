@@ -0,0 +1,91 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import com.reactivespring.service.MovieInfoChangeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@WebFluxTest(controllers = MovieInfoChangesController.class)
+@AutoConfigureWebTestClient
+public class MovieInfoChangesControllerUnitTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private MovieInfoChangeService movieInfoChangeServiceMock;
+
+    private static final ParameterizedTypeReference<ServerSentEvent<MovieInfoChange>> CHANGE_EVENT =
+            new ParameterizedTypeReference<>() {};
+
+    @Test
+    void testStreamMovieInfoChanges() {
+        var movieInfo = new MovieInfo("MIS001", "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+                LocalDate.parse("2013-08-02"), 2013, 7.6);
+        when(movieInfoChangeServiceMock.isSupported()).thenReturn(Mono.just(true));
+        when(movieInfoChangeServiceMock.changes("8200"))
+                .thenReturn(Flux.just(MovieInfoChange.reset(),
+                        new MovieInfoChange("8201", "MIS001", "update", movieInfo),
+                        new MovieInfoChange("8202", "MIS001", "delete", null)));
+
+        var events = webTestClient
+                .get()
+                .uri("/v1/moviechanges")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", "8200")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(CHANGE_EVENT)
+                .getResponseBody()
+                .filter(event -> event.data() != null);//skips the heartbeats
+
+        //the stream ends with the changes
+        StepVerifier.create(events)
+                .assertNext(event -> assertEquals(MovieInfoChange.RESET, event.event()))
+                .assertNext(event -> {
+                    assertEquals("8201", event.id());
+                    assertEquals("update", event.event());
+                    assertEquals(7.6, event.data().getMovieInfo().getIMDbRating());
+                })
+                .assertNext(event -> {
+                    assertEquals("8202", event.id());
+                    assertNull(event.data().getMovieInfo());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testStreamMovieInfoChangesUnsupported() {
+        when(movieInfoChangeServiceMock.isSupported()).thenReturn(Mono.just(false));
+
+        webTestClient
+                .get()
+                .uri("/v1/moviechanges")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.NOT_IMPLEMENTED);
+
+        verify(movieInfoChangeServiceMock, never()).changes(any());
+    }
+}
@@ -1,25 +1,37 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.config.SmileCodecConfig;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoSearch;
+import com.reactivespring.domain.ProjectedMovieInfo;
 import com.reactivespring.service.MoviesInfoService;
+import com.reactivespring.util.PageCursor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
+import static com.reactivespring.config.SmileCodecConfig.APPLICATION_SMILE;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = MoviesInfoController.class)
 @AutoConfigureWebTestClient//reqd. to interact with the endpoint defined in the controller
+@Import(SmileCodecConfig.class)
 public class MoviesInfoControllerUnitTest {
 
     @Autowired
@@ -40,7 +52,7 @@ public class MoviesInfoControllerUnitTest {
                         LocalDate.parse("2013-08-02"), 2013, 7.5));
 
         //using mockito to perform a dummy and not actual operation of fetching movies from the DB
-        when(moviesInfoServiceMock.listMoviesInfo()).thenReturn(Flux.fromIterable(movieInfos));
+        when(moviesInfoServiceMock.listMoviesInfo(null, null, 101, null)).thenReturn(Flux.fromIterable(movieInfos));
 
         webTestClient
                 .get()
@@ -52,6 +64,161 @@ public class MoviesInfoControllerUnitTest {
                 .hasSize(3);
     }
 
+    @Test
+    void testListMoviesInfoPage() {
+        var movieInfos = List.of(new MovieInfo("MIS001", "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+                        LocalDate.parse("2013-08-02"), 2013, 7.5),
+                new MovieInfo("MIS002", "Forrest Gump", List.of("Tom Hanks", "Robin Wright"),
+                        LocalDate.parse("1994-07-06"), 1994, 8.8),
+                new MovieInfo("MIS003", "Hera Pheri", List.of("Paresh Rawal", "Akshay Kumar", "Suneil Shetty"),
+                        LocalDate.parse("2000-03-31"), 2000, 8.2));
+
+        //the controller asks for one more movie than the limit to find out if there's a next page
+        when(moviesInfoServiceMock.listMoviesInfo(null, "MIS000", 3, null)).thenReturn(Flux.fromIterable(movieInfos));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/listmovies?limit=2&cursor={cursor}", PageCursor.encode("MIS000"))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode("MIS002"))
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void testListMoviesInfoByYearPage() {
+        var movieInfos = List.of(new MovieInfo("MIS001", "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+                        LocalDate.parse("2013-08-02"), 2013, 7.5),
+                new MovieInfo("MIS004", "Gravity", List.of("Sandra Bullock", "George Clooney"),
+                        LocalDate.parse("2013-10-04"), 2013, 7.7));
+
+        //the movies of a year are paged like all the movies
+        when(moviesInfoServiceMock.listMoviesInfo(2013, null, 2, null)).thenReturn(Flux.fromIterable(movieInfos));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/listmovies?year=2013&limit=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode("MIS001"))
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void testStreamMoviesInfoLimit() {
+        when(moviesInfoServiceMock.listMoviesInfo(2013, null, 500, null)).thenReturn(Flux.just(new MovieInfo("MIS001",
+                "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"), LocalDate.parse("2013-08-02"), 2013, 7.5)));
+
+        //the limit is capped at pagination.maxPageSize like for /listmovies
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/listmovies?year=2013&limit=10000")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void testStreamMoviesInfo() {
+        var movieInfos = List.of(new MovieInfo("MIS001", "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+                        LocalDate.parse("2013-08-02"), 2013, 7.5),
+                new MovieInfo("MIS002", "Forrest Gump", List.of("Tom Hanks", "Robin Wright"),
+                        LocalDate.parse("1994-07-06"), 1994, 8.8));
+
+        when(moviesInfoServiceMock.listMoviesInfo(null, null, 100, null)).thenReturn(Flux.fromIterable(movieInfos));
+
+        var movieInfoFlux = webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/listmovies")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        StepVerifier.create(movieInfoFlux)
+                .expectNextMatches(movieInfo -> movieInfo.getMovieInfoId().equals("MIS001"))
+                .expectNextMatches(movieInfo -> movieInfo.getMovieInfoId().equals("MIS002"))
+                .verifyComplete();
+    }
+
+    @Test
+    void testListMoviesInfoInvalidCursor() {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/listmovies?cursor=not*base64")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void testSearchMoviesInfo() {
+        var movieInfo = new MovieInfo("MIS001", "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+                LocalDate.parse("2013-08-02"), 2013, 7.5);
+        when(moviesInfoServiceMock.searchMoviesInfo(new MovieInfoSearch(null, "conj", 2013, "vera"), 100, null))
+                .thenReturn(Flux.just(movieInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/searchmovies?name=conj&year=2013&cast=vera")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1)
+                .contains(movieInfo);
+    }
+
+    @Test
+    void testListMoviesInfoByName() {
+        when(moviesInfoServiceMock.searchMoviesInfo(new MovieInfoSearch(null, "the", null, null), 10, null))
+                .thenReturn(Flux.just(new MovieInfo("MIS001", "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+                        LocalDate.parse("2013-08-02"), 2013, 7.5)));
+
+        //the name was ignored before, now it's a prefix search like /searchmovies
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/listmovies?name=the&limit=10")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void testListMoviesInfoByNameWithCursor() {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/listmovies?name=the&cursor={cursor}", PageCursor.encode("MIS001"))
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void testSearchMoviesInfoWithoutFilters() {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/searchmovies?name=")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
     @Test
     void testFindMovieInfoById() {
         var movieId = "MIS001";
@@ -59,7 +226,7 @@ public class MoviesInfoControllerUnitTest {
         var movie = new MovieInfo(movieId, "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
                 LocalDate.parse("2013-08-02"), 2013, 7.5);
 
-        when(moviesInfoServiceMock.findMovieInfoById(movieId)).thenReturn(Mono.just(movie));
+        when(moviesInfoServiceMock.findMovieInfoById(movieId, null)).thenReturn(Mono.just(movie));
 
         webTestClient
                 .get()
@@ -71,6 +238,148 @@ public class MoviesInfoControllerUnitTest {
                 .jsonPath("$.name").isEqualTo("The Conjuring");
     }
 
+    @Test
+    void testFindMovieInfoByIdNotModified() {
+        var movieId = "MIS001";
+
+        var movie = new MovieInfo(movieId, "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+                LocalDate.parse("2013-08-02"), 2013, 7.5, 2L);
+
+        when(moviesInfoServiceMock.findMovieInfoById(movieId, null)).thenReturn(Mono.just(movie));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/findmovie/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals("ETag", "\"2\"")
+                .expectHeader()
+                .valueEquals("Vary", "Accept");
+
+        //unchanged since the client got it
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/findmovie/{id}", movieId)
+                .header("If-None-Match", "\"2\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader()
+                .valueEquals("Vary", "Accept")
+                .expectBody()
+                .isEmpty();
+
+        //updated since the client got it
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/findmovie/{id}", movieId)
+                .header("If-None-Match", "\"1\"")
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    @Test
+    void testFindMovieInfoByIdFields() {
+        var movieId = "MIS001";
+
+        var projectedMovieInfo = new ProjectedMovieInfo();
+        projectedMovieInfo.setMovieInfoId(movieId);
+        projectedMovieInfo.setName("The Conjuring");
+        projectedMovieInfo.setIMDbRating(7.5);
+        projectedMovieInfo.setVersion(2L);
+
+        //the version is read for the ETag on top of the fields asked for
+        when(moviesInfoServiceMock.findMovieInfoById(movieId, List.of("name", "IMDbRating", "version")))
+                .thenReturn(Mono.just(projectedMovieInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/findmovie/{id}?fields=name,imdbRating", movieId)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals("ETag", "\"2\"")
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("The Conjuring")
+                .jsonPath("$.imdbRating").isEqualTo(7.5)
+                .jsonPath("$.cast").doesNotExist()
+                .jsonPath("$.releaseDate").doesNotExist();
+    }
+
+    @Test
+    void testFindMovieInfoByIdKeepsNulls() {
+        var movieId = "MIS001";
+
+        when(moviesInfoServiceMock.findMovieInfoById(movieId, null))
+                .thenReturn(Mono.just(new MovieInfo(movieId, "The Conjuring", List.of("Patrick Wilson"), null, 2013, 7.5, 2L)));
+
+        //a whole movie info is written as it always was, with the fields that aren't set as nulls
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/findmovie/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(String.class)
+                .value(body -> assertTrue(body.contains("\"releaseDate\":null"), body));
+    }
+
+    @Test
+    void testListMoviesInfoUnknownField() {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/listmovies?fields=name,budget")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void testFindMovieInfoByIds() {
+        var movieInfos = List.of(new MovieInfo("MIS001", "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+                        LocalDate.parse("2013-08-02"), 2013, 7.5),
+                new MovieInfo("MIS002", "Forrest Gump", List.of("Tom Hanks", "Robin Wright"),
+                        LocalDate.parse("1994-07-06"), 1994, 8.8));
+
+        when(moviesInfoServiceMock.findMovieInfoByIds(List.of("MIS001", "MIS002"), null)).thenReturn(Flux.fromIterable(movieInfos));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/findmovies?ids=MIS001,MIS002")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void testFindMovieInfoByIdsSmile() {
+        var movieInfos = List.of(new MovieInfo("MIS001", "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+                        LocalDate.parse("2013-08-02"), 2013, 7.5),
+                new MovieInfo("MIS002", "Forrest Gump", List.of("Tom Hanks", "Robin Wright"),
+                        LocalDate.parse("1994-07-06"), 1994, 8.8));
+
+        when(moviesInfoServiceMock.findMovieInfoByIds(List.of("MIS001", "MIS002"), null)).thenReturn(Flux.fromIterable(movieInfos));
+
+        //what movies-service asks for, JSON is only the fallback
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_SERVICE_URL + "/findmovies?ids=MIS001,MIS002")
+                .accept(APPLICATION_SMILE, MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(APPLICATION_SMILE)
+                .expectBodyList(MovieInfo.class)
+                .isEqualTo(movieInfos);
+    }
+
     @Test
     void testAddMovieInfo() {
         var movieInfo = new MovieInfo("mockId", "The Godfather", List.of("Al Pacino", "Robert De Niro"), LocalDate.parse("1972-03-24"), 1972,9.2);
@@ -93,6 +402,23 @@ public class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void testAddMovieInfoExistingId() {
+        var movieInfo = new MovieInfo("MIS001", "The Godfather", List.of("Al Pacino", "Robert De Niro"), LocalDate.parse("1972-03-24"), 1972,9.2);
+
+        //a new movie is inserted, one with the ID of an existing movie isn't saved over it
+        when(moviesInfoServiceMock.addMovieInfo(isA(MovieInfo.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error collection: movieInfo")));
+
+        webTestClient
+                .post()
+                .uri(MOVIES_INFO_SERVICE_URL + "/addmovie")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+    }
+
     @Test
     void testUpdateMovieInfo() {
         var origMovieInfo = new MovieInfo(null, "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga", "Ron Livingston"),
@@ -120,6 +446,56 @@ public class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void testPatchMovieInfo() {
+        var movieId = "MIS001";
+
+        when(moviesInfoServiceMock.patchMovieInfo(isA(MovieInfo.class), isA(String.class))).thenReturn(Mono.just(
+                new MovieInfo(movieId, "The Conjuring", List.of("Patrick Wilson", "Vera Farmiga"),
+                        LocalDate.parse("2013-08-02"), 2013, 7.6, 4L)));
+
+        webTestClient
+                .patch()
+                .uri(MOVIES_INFO_SERVICE_URL + "/updatemovieinfo/{id}", movieId)
+                .bodyValue(Map.of("imdbRating", 7.6, "version", 3))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    var patchedMovieInfo = movieInfoEntityExchangeResult.getResponseBody();
+                    assertNotNull(patchedMovieInfo);
+                    assertEquals(7.6, patchedMovieInfo.getIMDbRating());
+                    assertEquals(4L, patchedMovieInfo.getVersion());
+                });
+    }
+
+    @Test
+    void testPatchMovieInfoConflict() {
+        when(moviesInfoServiceMock.patchMovieInfo(isA(MovieInfo.class), isA(String.class)))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("Movie MIS001 isn't at version 3 anymore")));
+
+        webTestClient
+                .patch()
+                .uri(MOVIES_INFO_SERVICE_URL + "/updatemovieinfo/{id}", "MIS001")
+                .bodyValue(Map.of("imdbRating", 7.6, "version", 3))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+    }
+
+    @Test
+    void testPatchMovieInfoValidation() {
+        //only the fields sent are validated, the name and cast that are left out aren't missing
+        webTestClient
+                .patch()
+                .uri(MOVIES_INFO_SERVICE_URL + "/updatemovieinfo/{id}", "MIS001")
+                .bodyValue(Map.of("imdbRating", -1.0))
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
     @Test
     void testDeleteMovieInfo() {
         var deletedMovieId = "MIS001";
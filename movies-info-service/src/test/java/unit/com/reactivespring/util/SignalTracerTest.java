@@ -0,0 +1,68 @@
+package com.reactivespring.util;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignalTracerTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(SignalTracer.CATEGORY_PREFIX + "test");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void traceSamplesOneInSampleRateSubscriptions() {
+        var signalTracer = new SignalTracer(true, 2);
+        var flux = Flux.just(1, 2, 3).transform(signalTracer.<Integer>flux("test"));
+
+        for (int i = 0; i < 4; i++)
+            StepVerifier.create(flux).expectNext(1, 2, 3).verifyComplete();
+
+        assertEquals(2, tracedSubscriptions());
+    }
+
+    @Test
+    void traceDisabled() {
+        var signalTracer = new SignalTracer(false, 1);
+        var flux = Flux.just(1, 2, 3).transform(signalTracer.<Integer>flux("test"));
+
+        StepVerifier.create(flux).expectNext(1, 2, 3).verifyComplete();
+        assertEquals(0, tracedSubscriptions());
+
+        //switched on at runtime, for the same Flux
+        signalTracer.configure(true, 1);
+        StepVerifier.create(flux).expectNext(1, 2, 3).verifyComplete();
+        assertEquals(1, tracedSubscriptions());
+    }
+
+    @Test
+    void configureInvalidSampleRate() {
+        var signalTracer = new SignalTracer(false, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> signalTracer.configure(true, 0));
+    }
+
+    private long tracedSubscriptions() {
+        return appender.list.stream()
+                .filter(event -> event.getFormattedMessage().contains("onComplete"))
+                .count();
+    }
+}
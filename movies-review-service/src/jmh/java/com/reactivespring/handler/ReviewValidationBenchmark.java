@@ -0,0 +1,55 @@
+package com.reactivespring.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewDataException;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.util.concurrent.TimeUnit;
+
+//The bean validation done by ReviewHandler for every review that is added or updated. An invalid review also pays
+//for building the error message and the ReviewDataException.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReviewValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private ReviewHandler reviewHandler;
+
+    private final Review validReview = new Review(null, "1", "Awesome Movie", 9.0);
+    private final Review invalidReview = new Review(null, null, "Awesome Movie", -9.0);
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        //the repository isn't used by validate()
+        reviewHandler = new ReviewHandler(null, null, validatorFactory.getValidator(), new ObjectMapper(), null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Review validReview() {
+        reviewHandler.validate(validReview);
+        return validReview;
+    }
+
+    @Benchmark
+    public ReviewDataException invalidReview() {
+        try {
+            reviewHandler.validate(invalidReview);
+            throw new IllegalStateException("The review should be invalid");
+        } catch (ReviewDataException ex) {
+            return ex;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.reactivespring;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling//ReviewStatsRebuildJob
 public class MoviesReviewServiceApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,112 @@
+package com.reactivespring.config;
+
+import com.reactivespring.domain.Review;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+//Creates the indexes of the Review collection before the application starts serving requests and then asks Mongo
+//(explain) how it would run each repository query. A query that would scan the whole collection is logged as a
+//warning, or stops the application if mongodb.indexes.failOnCollectionScan is true. Also gives the documents saved
+//before Review had a version their first version.
+@Component
+@Slf4j
+public class MongoIndexInitializer implements SmartInitializingSingleton {
+
+    private static final String MIGRATIONS_COLLECTION = "migrations";
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private boolean failOnCollectionScan;
+    private Duration timeout;
+
+    public MongoIndexInitializer(ReactiveMongoTemplate mongoTemplate,
+                                 @Value("${mongodb.indexes.failOnCollectionScan:false}") boolean failOnCollectionScan,
+                                 @Value("${mongodb.indexes.timeout:30s}") Duration timeout){
+        this.mongoTemplate = mongoTemplate;
+        this.failOnCollectionScan = failOnCollectionScan;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        //blocking is fine here, this runs once on the main thread while the application starts
+        backfillVersions()
+                .then(createIndexes())
+                .then(verifyQueryPath("findReviewByMovieInfoId", new Document("movieInfoId", new ObjectId()), null))
+                .then(verifyQueryPath("findReviewByMovieInfoIdIn",
+                        new Document("movieInfoId", new Document("$in", List.of(new ObjectId(), "MIS001"))), null))
+                .then(verifyQueryPath("reviews of a movie sorted by rating",
+                        new Document("movieInfoId", new ObjectId()), new Document("rating", -1)))
+                .block(timeout);
+    }
+
+    //save() takes a document without a version for a new one and would fail to insert it again. Only done once per
+    //database, the document added to the migrations collection afterwards skips it on the next starts.
+    private Mono<Void> backfillVersions(){
+        var backfilled = Query.query(Criteria.where("_id").is("reviewVersions"));
+        return mongoTemplate.exists(backfilled, MIGRATIONS_COLLECTION)
+                .filter(done -> !done)
+                .flatMap(notDone -> mongoTemplate.updateMulti(Query.query(Criteria.where("version").exists(false)), new Update().set("version", 0L), Review.class))
+                .doOnNext(result -> log.info("Version 0 given to {} documents of {}", result.getModifiedCount(), mongoTemplate.getCollectionName(Review.class)))
+                .flatMap(result -> mongoTemplate.save(new Document("_id", "reviewVersions").append("completedAt", new Date()), MIGRATIONS_COLLECTION))
+                .then();
+    }
+
+    //indexes declared with @Indexed/@CompoundIndex on Review
+    private Mono<Void> createIndexes(){
+        var indexOps = mongoTemplate.indexOps(Review.class);
+        var indexResolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+
+        return Flux.fromIterable(indexResolver.resolveIndexFor(Review.class))
+                .concatMap(indexOps::ensureIndex)
+                .doOnNext(indexName -> log.info("Index {} is in place on {}", indexName, mongoTemplate.getCollectionName(Review.class)))
+                .then();
+    }
+
+    private Mono<Void> verifyQueryPath(String queryPath, Document filter, Document sort){
+        var find = new Document("find", mongoTemplate.getCollectionName(Review.class))
+                .append("filter", filter);
+        if (sort != null)
+            find.append("sort", sort);
+
+        return mongoTemplate.executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"))
+                .flatMap(explain -> {
+                    var winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan");
+                    if (!hasStage(winningPlan, "COLLSCAN"))
+                        return Mono.empty();
+
+                    var message = "ReviewReactiveRepository." + queryPath + " would scan the whole collection, winning plan: " + winningPlan;
+                    if (failOnCollectionScan)
+                        return Mono.error(new IllegalStateException(message));
+
+                    log.warn(message);
+                    return Mono.empty();
+                });
+    }
+
+    //the stage can be nested at any depth, e.g. FETCH -> IXSCAN or SUBPLAN -> OR -> COLLSCAN
+    private static boolean hasStage(Object plan, String stage){
+        if (plan instanceof Document) {
+            var planStage = (Document) plan;
+            return stage.equals(planStage.get("stage")) || planStage.values().stream().anyMatch(value -> hasStage(value, stage));
+        }
+        if (plan instanceof List)
+            return ((List<?>) plan).stream().anyMatch(value -> hasStage(value, stage));
+
+        return false;
+    }
+}
@@ -0,0 +1,23 @@
+package com.reactivespring.config;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.util.MovieInfoIds;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeSaveCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+//Stores the movieInfoId of the reviews saved through the repository as an ObjectId where it is one (see MovieInfoIds).
+//Reading it back needs nothing, Spring Data converts an ObjectId to the String field.
+@Component
+public class ReviewMovieInfoIdCallback implements ReactiveBeforeSaveCallback<Review> {
+
+    @Override
+    public Publisher<Review> onBeforeSave(Review review, Document document, String collection) {
+        if (review.getMovieInfoId() != null)
+            document.put("movieInfoId", MovieInfoIds.toStored(review.getMovieInfoId()));
+
+        return Mono.just(review);
+    }
+}
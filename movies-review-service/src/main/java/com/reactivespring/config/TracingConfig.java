@@ -0,0 +1,106 @@
+package com.reactivespring.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.TraceContext;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+//Spans are created by Sleuth for the inbound requests, the trace context is carried in the Reactor Context
+//(spring.sleuth.reactor.instrumentation-type: manual).
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(value = "tracing.file.enabled", havingValue = "true")
+    public FileSpanHandler fileSpanHandler(@Value("${tracing.file.path}") Path path,
+                                           @Value("${tracing.file.queueCapacity:10000}") int queueCapacity,
+                                           MeterRegistry meterRegistry) throws IOException {
+        return new FileSpanHandler(path, queueCapacity, meterRegistry);
+    }
+
+    //Sleuth only traces the blocking Mongo driver, and the reactive driver (4.2) has no way to hand the Reactor
+    //Context to a CommandListener. So every reactive repository call gets a client span instead, child of the span
+    //found in the Reactor Context. A repository call is a single Mongo command plus its getMores.
+    @Bean
+    public static BeanPostProcessor repositoryTracingPostProcessor(ObjectProvider<Tracer> tracerProvider){
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport) {
+                    ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(repositoryFactory ->
+                            repositoryFactory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) ->
+                                    proxyFactory.addAdvice(tracingInterceptor(tracerProvider,
+                                            repositoryInformation.getRepositoryInterface().getSimpleName()))));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static MethodInterceptor tracingInterceptor(ObjectProvider<Tracer> tracerProvider, String repositoryName){
+        return invocation -> {
+            var result = invocation.proceed();
+            var spanName = repositoryName + "." + invocation.getMethod().getName();
+
+            if (result instanceof Mono)
+                return traced((Mono<?>) result, tracerProvider, spanName);
+            if (result instanceof Flux)
+                return traced((Flux<?>) result, tracerProvider, spanName);
+
+            return result;
+        };
+    }
+
+    private static <T> Mono<T> traced(Mono<T> mono, ObjectProvider<Tracer> tracerProvider, String spanName){
+        return Mono.deferContextual(context -> {
+            var span = startSpan(tracerProvider, context, spanName);
+            if (span == null)
+                return mono;
+
+            return mono
+                    .doOnError(span::error)
+                    .doFinally(signalType -> span.end());
+        });
+    }
+
+    private static <T> Flux<T> traced(Flux<T> flux, ObjectProvider<Tracer> tracerProvider, String spanName){
+        return Flux.deferContextual(context -> {
+            var span = startSpan(tracerProvider, context, spanName);
+            if (span == null)
+                return flux;
+
+            return flux
+                    .doOnError(span::error)
+                    .doFinally(signalType -> span.end());
+        });
+    }
+
+    //null outside of a traced request, e.g. the index creation at startup
+    private static Span startSpan(ObjectProvider<Tracer> tracerProvider, ContextView context, String spanName){
+        var tracer = tracerProvider.getIfAvailable();
+        var parent = context.<TraceContext>getOrDefault(TraceContext.class, null);
+        if (tracer == null || parent == null)
+            return null;
+
+        return tracer.spanBuilder()
+                .setParent(parent)
+                .name(spanName)
+                .kind(Span.Kind.CLIENT)
+                .remoteServiceName("mongodb")
+                .start();
+    }
+}
@@ -0,0 +1,26 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+//One per batch of the POST /v1/reviews/bulk request, streamed back as soon as the batch is written
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkInsertResult {
+
+    private long batch;
+    private int inserted;
+    private List<RejectedLine> rejected;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RejectedLine {
+        private long line;
+        private String reason;
+    }
+}
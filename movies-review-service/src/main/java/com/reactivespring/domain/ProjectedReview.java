@@ -0,0 +1,9 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+//A review read with fields=, the fields that weren't read are left out of the JSON instead of written as nulls.
+//A whole review keeps its nulls.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProjectedReview extends Review {
+}
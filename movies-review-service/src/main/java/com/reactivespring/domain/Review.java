@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Min;
@@ -13,16 +15,29 @@ import javax.validation.constraints.NotNull;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
+//Serves the lookups by movieInfoId (prefix of the index) and the reviews of a movie sorted by rating,
+//so there is no separate movieInfoId index
+@CompoundIndex(name = "movieInfoId_rating", def = "{'movieInfoId': 1, 'rating': -1}")
 public class Review {
 
     @Id
     private String reviewId;
 
+    //the _id of the movie in movies-info-service, stored as an ObjectId when it is one (see MovieInfoIds)
     @NotNull(message = "review.movieInfoId must not be null")
-    private Long movieInfoId;
+    private String movieInfoId;
 
     private String comment;
 
     @Min(value = 0L, message = "review.rating must not be negative")
     private Double rating;
+
+    //Optimistic locking, incremented by every update. A PATCH sent with the version the client read fails with
+    //a 409 if the review has been changed since.
+    @Version
+    private Long version;
+
+    public Review(String reviewId, String movieInfoId, String comment, Double rating) {
+        this(reviewId, movieInfoId, comment, rating, null);
+    }
 }
@@ -0,0 +1,47 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+//Aggregates of the reviews of a movie, kept up to date with $inc as reviews are added, updated and deleted
+//and recomputed from the reviews by ReviewStatsRebuildJob
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewStats {
+
+    private static final int MAX_HISTOGRAM_BUCKET = 10;
+
+    @Id//stored as an ObjectId when it is one, like Review.movieInfoId
+    private String movieInfoId;
+
+    private long count;
+
+    //reviews that have a rating, the average is ratingSum / ratingCount
+    private long ratingCount;
+    private double ratingSum;
+
+    //number of ratings per whole point, "0" to "10" (ratings above 10 are counted in "10")
+    private Map<String, Long> ratingHistogram = new TreeMap<>();
+
+    public static ReviewStats empty(String movieInfoId){
+        return new ReviewStats(movieInfoId, 0, 0, 0, new TreeMap<>());
+    }
+
+    public static String histogramBucket(double rating){
+        return String.valueOf((int) Math.min(Math.floor(rating), MAX_HISTOGRAM_BUCKET));
+    }
+
+    @Transient//not stored, only part of the JSON
+    public Double getAverageRating(){
+        return ratingCount > 0 ? ratingSum / ratingCount : null;
+    }
+}
@@ -5,6 +5,8 @@ import com.reactivespring.exception.ReviewNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
 import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
@@ -30,6 +32,13 @@ public class GlobalErrorHandler implements ErrorWebExceptionHandler {
             return serverWebExchange.getResponse().writeWith(Mono.just(errorMessage));
         }
 
+        //a PATCH with a version the review isn't at anymore, a concurrent update between the findById and the save of
+        //a PUT, or a POST with the ID of a review that already exists
+        if(throwable instanceof OptimisticLockingFailureException || throwable instanceof DuplicateKeyException){
+            serverWebExchange.getResponse().setStatusCode(HttpStatus.CONFLICT);
+            return serverWebExchange.getResponse().writeWith(Mono.just(errorMessage));
+        }
+
         serverWebExchange.getResponse().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
         return serverWebExchange.getResponse().writeWith(Mono.just(errorMessage));
     }
@@ -0,0 +1,93 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.domain.Review;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.UUID;
+
+//The reviews added to this instance, for the clients following the new reviews of a movie instead of polling for them.
+//A new subscriber gets the reviews of the replay window (replaySize reviews of at most replayMaxAge) and then the ones
+//added from then on. Each subscriber has a buffer of subscriberBufferSize events, a client that lets it fill up is
+//dropped (its stream ends) instead of having the events buffered without limit, EventSource clients then reconnect.
+@Component
+@Slf4j
+public class ReviewFeed {
+
+    //the event IDs of a previous run of the application mean nothing to this one
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+
+    private final Sinks.Many<FeedEntry> sink;
+    private long sequence;//guarded by the lock of publish()
+
+    private final int subscriberBufferSize;
+    private final Duration heartbeatInterval;
+
+    public ReviewFeed(@Value("${reviewFeed.replaySize:100}") int replaySize,
+                      @Value("${reviewFeed.replayMaxAge:1m}") Duration replayMaxAge,
+                      @Value("${reviewFeed.subscriberBufferSize:256}") int subscriberBufferSize,
+                      @Value("${reviewFeed.heartbeatInterval:15s}") Duration heartbeatInterval) {
+        this.sink = Sinks.many().replay().limit(replaySize, replayMaxAge);
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    //synchronized so the sequence numbers are emitted in order, and as the sink only takes one emission at a time
+    public synchronized void publish(Review review) {
+        var result = sink.tryEmitNext(new FeedEntry(++sequence, review));
+        if (result.isFailure())
+            log.warn("Review {} not published to the feed: {}", review.getReviewId(), result);
+    }
+
+    //Server sent events for the new reviews of the movie, with heartbeat comments in between. After a reconnect with
+    //the ID of the last event received (Last-Event-ID) the replayed reviews up to that one are skipped.
+    public Flux<ServerSentEvent<Review>> newReviews(String movieInfoId, String lastEventId) {
+        var lastSequence = sequenceOf(lastEventId);
+
+        var reviews = sink.asFlux()
+                .filter(entry -> entry.sequence > lastSequence && movieInfoId.equals(entry.review.getMovieInfoId()))
+                .map(entry -> ServerSentEvent.builder(entry.review)
+                        .id(instanceId + "-" + entry.sequence)
+                        .event("review")
+                        .build());
+        var heartbeats = Flux.interval(Duration.ZERO, heartbeatInterval)
+                .onBackpressureDrop()
+                .map(tick -> ServerSentEvent.<Review>builder().comment("heartbeat").build());
+
+        return Flux.merge(reviews, heartbeats)
+                .onBackpressureBuffer(subscriberBufferSize, event -> {}, BufferOverflowStrategy.ERROR)
+                .onErrorResume(Exceptions::isOverflow, ex -> {
+                    log.info("Dropping a slow subscriber of the new reviews of movie {}", movieInfoId);
+                    return Flux.empty();
+                });
+    }
+
+    //0 (nothing skipped) for IDs of another run or that can't be parsed
+    private long sequenceOf(String eventId) {
+        if (eventId == null || !eventId.startsWith(instanceId + "-"))
+            return 0;
+
+        try {
+            return Long.parseLong(eventId.substring(instanceId.length() + 1));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static class FeedEntry {
+        private final long sequence;
+        private final Review review;
+
+        FeedEntry(long sequence, Review review) {
+            this.sequence = sequence;
+            this.review = review;
+        }
+    }
+}
@@ -1,68 +1,340 @@
 package com.reactivespring.handler;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.BulkInsertResult;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
+import com.reactivespring.util.MovieInfoIds;
+import com.reactivespring.util.PageCursor;
+import com.reactivespring.util.ReviewFields;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Validator;
 import javax.validation.ConstraintViolation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.reactivespring.config.SmileCodecConfig.APPLICATION_SMILE;
 
 @Component//so that it gets scanned as a bean and automatically injected into the bean class
 @Slf4j
 public class ReviewHandler {
 
-    @Autowired
     private Validator validator;
 
+    //Smallest possible ObjectId, every generated ID is greater than or equal to it
+    private static final String MIN_OBJECT_ID = "000000000000000000000000";
+
     private ReviewReactiveRepository reviewReactiveRepository;
 
-    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository){
+    private ReviewStatsRepository reviewStatsRepository;
+
+    private ObjectMapper objectMapper;
+
+    private ReviewFeed reviewFeed;
+
+    @Value("${pagination.defaultPageSize:100}")
+    private int defaultPageSize;
+
+    @Value("${pagination.maxPageSize:500}")
+    private int maxPageSize;
+
+    @Value("${bulkInsert.batchSize:1000}")
+    private int bulkInsertBatchSize;
+
+    @Value("${bulkInsert.concurrency:4}")
+    private int bulkInsertConcurrency;
+
+    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository, ReviewStatsRepository reviewStatsRepository,
+                         Validator validator, ObjectMapper objectMapper, ReviewFeed reviewFeed){
         this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewStatsRepository = reviewStatsRepository;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.reviewFeed = reviewFeed;
     }
 
-    private void validate(Review review){
+    //package-private for ReviewValidationBenchmark
+    void validate(Review review){
         var constraintViolations = validator.validate(review);
-        log.info("constraintsViolations: {}", constraintViolations);
+        log.debug("constraintsViolations: {}", constraintViolations);
 
         if (constraintViolations.size() > 0) {
             var errorMessage = constraintViolations.stream()
                     .map(ConstraintViolation::getMessage)
                     .sorted()
                     .collect(Collectors.joining(", "));
-            log.info("errorMessage : {} ", errorMessage);
+            log.debug("errorMessage : {} ", errorMessage);
             throw new ReviewDataException(errorMessage);
         }
     }
 
+    //Like validate, but a PATCH only has the fields that change, so the fields that aren't sent are left out
+    private void validatePatch(Review patch){
+        var errorMessage = validator.validate(patch).stream()
+                .filter(violation -> violation.getInvalidValue() != null)
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+        if (!errorMessage.isEmpty())
+            throw new ReviewDataException(errorMessage);
+    }
+
     public Mono<ServerResponse> addReview(ServerRequest request) {
 
         return request.bodyToMono(Review.class)    //extract the request to a Mono
                 .doOnNext(this::validate)
                 .flatMap(reviewReactiveRepository::save)//Returns Mono<Review>
+                .flatMap(savedReview -> reviewStatsRepository.addToStats(List.of(savedReview)).thenReturn(savedReview))
+                .doOnNext(reviewFeed::publish)
                 .flatMap(savedReview -> {
                     return ServerResponse.status(HttpStatus.CREATED).bodyValue(savedReview);
                 });//transform Mono<Review> to Mono<ServerResponse> and return
     }
 
+    //Bulk import with one review per line of an NDJSON body. Each line is validated like in addReview, and the valid
+    //reviews are written in batches of bulkInsert.batchSize, with up to bulkInsert.concurrency unordered insertMany's
+    //at a time. A line that can't be parsed, isn't valid or can't be inserted is rejected on its own. The response
+    //streams a BulkInsertResult per batch (NDJSON) in the order of the batches, with the rejected line numbers and reasons.
+    public Mono<ServerResponse> bulkAddReviews(ServerRequest request){
+        var results = request.bodyToFlux(String.class)//split into lines by the StringDecoder
+                .index()
+                .filter(numberedLine -> !numberedLine.getT2().isBlank())
+                .map(numberedLine -> parseLine(numberedLine.getT1() + 1, numberedLine.getT2()))
+                .buffer(bulkInsertBatchSize)
+                .index()
+                .flatMapSequential(numberedBatch -> insertBatch(numberedBatch.getT1() + 1, numberedBatch.getT2()),
+                        bulkInsertConcurrency);
+
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(results, BulkInsertResult.class);
+    }
+
+    private BulkLine parseLine(long lineNumber, String line){
+        try {
+            var review = objectMapper.readValue(line, Review.class);
+            if (review == null)
+                return new BulkLine(lineNumber, null, "Invalid JSON: a review object is expected");
+
+            validate(review);
+            return new BulkLine(lineNumber, review, null);
+        } catch (JsonProcessingException ex) {
+            return new BulkLine(lineNumber, null, "Invalid JSON: " + ex.getOriginalMessage());
+        } catch (ReviewDataException ex) {
+            return new BulkLine(lineNumber, null, ex.getMessage());
+        }
+    }
+
+    private Mono<BulkInsertResult> insertBatch(long batchNumber, List<BulkLine> lines){
+        var accepted = lines.stream().filter(BulkLine::isValid).collect(Collectors.toList());
+        var rejected = lines.stream()
+                .filter(line -> !line.isValid())
+                .map(line -> new BulkInsertResult.RejectedLine(line.lineNumber, line.rejectReason))
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        return reviewReactiveRepository.insertUnordered(accepted.stream().map(line -> line.review).collect(Collectors.toList()))
+                .flatMap(failedInserts -> {
+                    failedInserts.forEach((position, reason) ->
+                            rejected.add(new BulkInsertResult.RejectedLine(accepted.get(position).lineNumber, reason)));
+                    rejected.sort(Comparator.comparingLong(BulkInsertResult.RejectedLine::getLine));
+
+                    var inserted = IntStream.range(0, accepted.size())
+                            .filter(position -> !failedInserts.containsKey(position))
+                            .mapToObj(position -> accepted.get(position).review)
+                            .collect(Collectors.toList());
+                    return reviewStatsRepository.addToStats(inserted)
+                            .doOnSuccess(done -> inserted.forEach(reviewFeed::publish))
+                            .thenReturn(new BulkInsertResult(batchNumber, inserted.size(), rejected));
+                });
+    }
+
+    //fields= only reads and returns the fields listed, e.g. /v1/reviews?movieInfoId=1&fields=rating (the ID is always there)
     public Mono<ServerResponse> getReviews(ServerRequest request){
+        List<String> fields;
+        try {
+            fields = ReviewFields.parse(request.queryParam("fields").orElse(null));
+        } catch (IllegalArgumentException ex) {
+            return Mono.error(new ReviewDataException(ex.getMessage()));
+        }
+
+        return findReviewsByMovieInfoId(request, fields)
+                .map(reviewsFlux -> ok(request).body(reviewsFlux, Review.class))
+                .orElseGet(() -> getReviewsPage(request, fields));
+    }
+
+    //Functional endpoints don't negotiate the content type, unless it's set the first codec that can write the body
+    //(JSON) is used. Smile is used for the clients that accept it ahead of JSON, i.e. movies-service.
+    private static ServerResponse.BodyBuilder ok(ServerRequest request){
+        var accepted = new ArrayList<>(request.headers().accept());
+        MediaType.sortBySpecificityAndQuality(accepted);
+
+        var mediaType = accepted.stream()
+                .filter(accept -> accept.isCompatibleWith(MediaType.APPLICATION_JSON) || accept.isCompatibleWith(APPLICATION_SMILE))
+                .findFirst()
+                .filter(accept -> !accept.isCompatibleWith(MediaType.APPLICATION_JSON))//*/* gets JSON
+                .map(accept -> APPLICATION_SMILE)
+                .orElse(MediaType.APPLICATION_JSON);
+        return ServerResponse.ok().contentType(mediaType);
+    }
+
+    //Same reviews as getReviews, but written one at a time as NDJSON or server sent events instead of one JSON array.
+    //Without a movieInfoId(s) filter all the reviews are streamed, the Mongo cursor is only read as fast as the
+    //client consumes the response.
+    public Mono<ServerResponse> streamReviews(ServerRequest request, MediaType mediaType){
+        List<String> fields;
+        try {
+            fields = ReviewFields.parse(request.queryParam("fields").orElse(null));
+        } catch (IllegalArgumentException ex) {
+            return Mono.error(new ReviewDataException(ex.getMessage()));
+        }
+
+        var reviewsFlux = findReviewsByMovieInfoId(request, fields)
+                .orElseGet(() -> reviewReactiveRepository.findAllBy(fields));
+
+        return ServerResponse.ok().contentType(mediaType).body(reviewsFlux, Review.class);
+    }
+
+    //e.g. /v1/reviews/stream?movieInfoId=1, server sent events for the reviews of the movie as they are added (see
+    //ReviewFeed). The feed is kept in memory, so with more than one instance a client only gets the reviews added
+    //to the instance it is connected to.
+    public Mono<ServerResponse> streamNewReviews(ServerRequest request){
         var movieInfoId = request.queryParam("movieInfoId");
+        if (movieInfoId.isEmpty())
+            return Mono.error(new ReviewDataException("movieInfoId is required"));
+
+        var events = reviewFeed.newReviews(movieInfoId.get(), request.headers().firstHeader("Last-Event-ID"));
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(events, new ParameterizedTypeReference<ServerSentEvent<Review>>() {});
+    }
 
-        if(movieInfoId.isPresent()){
-            var reviewsFlux = reviewReactiveRepository.findReviewByMovieInfoId(Long.valueOf(movieInfoId.get()));
-            return ServerResponse.ok().body(reviewsFlux, Review.class);
-        }else{
-            var reviewsFlux = reviewReactiveRepository.findAll();
-            return ServerResponse.ok().body(reviewsFlux, Review.class);
+    //empty if neither movieInfoId nor movieInfoIds is given
+    private Optional<Flux<Review>> findReviewsByMovieInfoId(ServerRequest request, List<String> fields){
+        var movieInfoId = request.queryParam("movieInfoId");
+        var movieInfoIds = request.queryParams().get("movieInfoIds");
+        var top = request.queryParam("top");
+
+        if(movieInfoIds != null){
+            //Bulk lookup for many movies with a single $in query, e.g. /v1/reviews?movieInfoIds=1,2,3
+            return Optional.of(reviewReactiveRepository.findReviewByMovieInfoIdIn(MovieInfoIds.toStored(parseMovieInfoIds(movieInfoIds)), fields));
+        }else if(movieInfoId.isPresent() && top.isPresent()){
+            //The best rated reviews of a movie, e.g. /v1/reviews?movieInfoId=1&top=5, read in order from the movieInfoId_rating index
+            int limit;
+            try {
+                limit = Integer.parseInt(top.get());
+            } catch (NumberFormatException ex) {
+                return Optional.of(Flux.error(new ReviewDataException("top must be a number")));
+            }
+            if (limit < 1)
+                return Optional.of(Flux.error(new ReviewDataException("top must be greater than 0")));
+
+            var page = PageRequest.of(0, Math.min(limit, maxPageSize), Sort.by(Sort.Direction.DESC, "rating"));
+            return Optional.of(reviewReactiveRepository.findReviewByMovieInfoId(MovieInfoIds.toStored(movieInfoId.get()), page, fields));
+        }else if(movieInfoId.isPresent()){
+            return Optional.of(reviewReactiveRepository.findReviewByMovieInfoId(MovieInfoIds.toStored(movieInfoId.get()), fields));
         }
+
+        return Optional.empty();
+    }
+
+    private static List<String> parseMovieInfoIds(List<String> movieInfoIds){
+        return movieInfoIds.stream()
+                .flatMap(param -> Arrays.stream(param.split(",")))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    //Review count, average rating and rating histogram of a movie, e.g. /v1/reviews/stats?movieInfoId=1, or of
+    //many movies, e.g. /v1/reviews/stats?movieInfoIds=1,2,3. A movie without reviews has empty stats.
+    public Mono<ServerResponse> getReviewStats(ServerRequest request){
+        var movieInfoId = request.queryParam("movieInfoId");
+        var movieInfoIds = request.queryParams().get("movieInfoIds");
+
+        if(movieInfoIds != null){
+            var ids = parseMovieInfoIds(movieInfoIds);
+            var statsFlux = reviewStatsRepository.findAllById(ids)
+                    .collectMap(ReviewStats::getMovieInfoId)
+                    .flatMapMany(statsById -> Flux.fromIterable(ids)
+                            .distinct()
+                            .map(id -> statsById.getOrDefault(id, ReviewStats.empty(id))));
+            return ok(request).body(statsFlux, ReviewStats.class);
+        }else if(movieInfoId.isPresent()){
+            var id = movieInfoId.get();
+            return reviewStatsRepository.findById(id)
+                    .defaultIfEmpty(ReviewStats.empty(id))
+                    .flatMap(stats -> ok(request).bodyValue(stats));
+        }
+
+        return Mono.error(new ReviewDataException("movieInfoId or movieInfoIds is required"));
+    }
+
+    //All the reviews are returned a page at a time, e.g. /v1/reviews?limit=50. If there are more reviews the
+    //X-Next-Cursor header holds the cursor for the next page, e.g. /v1/reviews?limit=50&cursor=<X-Next-Cursor>
+    private Mono<ServerResponse> getReviewsPage(ServerRequest request, List<String> fields){
+        int limit;
+        String afterId;
+        try {
+            limit = request.queryParam("limit").map(Integer::valueOf).orElse(defaultPageSize);
+            afterId = request.queryParam("cursor").map(PageCursor::decode).orElse(null);
+        } catch (IllegalArgumentException ex) {//NumberFormatException is an IllegalArgumentException as well
+            return Mono.error(new ReviewDataException("Invalid limit or cursor"));
+        }
+
+        if (limit < 1)
+            return Mono.error(new ReviewDataException("limit must be greater than 0"));
+
+        var pageSize = Math.min(limit, maxPageSize);
+        //one extra review is read to know if there's a next page, the page itself is at most maxPageSize long
+        return findReviewsAfter(afterId, pageSize + 1, fields)
+                .collectList()
+                .flatMap(reviews -> {
+                    if (reviews.size() <= pageSize)
+                        return ok(request).bodyValue(reviews);
+
+                    var page = reviews.subList(0, pageSize);
+                    return ok(request)
+                            .header(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode(page.get(pageSize - 1).getReviewId()))
+                            .bodyValue(page);
+                });
+    }
+
+    private Flux<Review> findReviewsAfter(String afterId, int limit, List<String> fields){
+        var page = PageRequest.of(0, limit, Sort.by("reviewId"));
+        if (afterId == null)
+            return reviewReactiveRepository.findAllBy(page, fields);
+
+        if (ObjectId.isValid(afterId))
+            return reviewReactiveRepository.findByReviewIdGreaterThan(afterId, page, fields);
+
+        //Mongo sorts string IDs before ObjectIds and $gt only matches values of the same type, so after a
+        //string ID we read the remaining strings and then carry on with the ObjectIds
+        return Flux.concat(reviewReactiveRepository.findByReviewIdGreaterThan(afterId, page, fields),
+                        reviewReactiveRepository.findByReviewIdGreaterThanEqual(MIN_OBJECT_ID, page, fields))
+                .take(limit);
     }
 
     public Mono<ServerResponse> updateReview(ServerRequest request){
@@ -72,18 +344,24 @@ public class ReviewHandler {
         //switchIfEmpty() handles the scenario where findById() doesn't return any data
 
         return existingReview
-                .flatMap(review -> request.bodyToMono(Review.class)
-                .map(reqReview -> {
-                    review.setReviewId(reqReview.getReviewId());
-                    review.setMovieInfoId(reqReview.getMovieInfoId());
-                    review.setComment(reqReview.getComment());
-                    review.setRating(reqReview.getRating());
-
-                    return review;
-                })
-                .flatMap(reviewReactiveRepository::save)
-                .flatMap(savedReview -> ServerResponse.ok().bodyValue(savedReview))
-        );
+                .flatMap(review -> {
+                    //what the stats have counted so far, the review itself is changed below
+                    var previousReview = new Review(review.getReviewId(), review.getMovieInfoId(), review.getComment(), review.getRating());
+                    return request.bodyToMono(Review.class)
+                            .map(reqReview -> {
+                                //the review keeps the ID of the path and its own version, whatever the body has
+                                review.setMovieInfoId(reqReview.getMovieInfoId());
+                                review.setComment(reqReview.getComment());
+                                review.setRating(reqReview.getRating());
+
+                                return review;
+                            })
+                            .flatMap(reviewReactiveRepository::save)
+                            .flatMap(savedReview -> reviewStatsRepository.removeFromStats(List.of(previousReview))
+                                    .then(reviewStatsRepository.addToStats(List.of(savedReview)))
+                                    .thenReturn(savedReview))
+                            .flatMap(savedReview -> ServerResponse.ok().bodyValue(savedReview));
+                });
 
         /*Alternative approach to handle the scenario where findById() doesn't return any data.
         We use the switchIfEmpty() while building the response instead of using it after findById().
@@ -104,12 +382,70 @@ public class ReviewHandler {
 
     }
 
+    //Partial update, only the fields sent are changed, e.g. {"rating": 7.5}, in one findAndModify instead of the
+    //findById and save of updateReview. With the version of the review in the body, e.g. {"rating": 7.5, "version": 2},
+    //the update fails with a 409 if someone else updated the review in between.
+    public Mono<ServerResponse> patchReview(ServerRequest request){
+        var reviewId = request.pathVariable("id");
+
+        return request.bodyToMono(Review.class)
+                .switchIfEmpty(Mono.error(new ReviewDataException("The fields to update are missing")))
+                .doOnNext(this::validatePatch)
+                .flatMap(patch -> reviewReactiveRepository.patch(reviewId, patch)
+                        .switchIfEmpty(Mono.defer(() -> patchFailure(reviewId, patch)))
+                        .flatMap(previousReview -> {
+                            var patchedReview = new Review(reviewId,
+                                    patch.getMovieInfoId() != null ? patch.getMovieInfoId() : previousReview.getMovieInfoId(),
+                                    patch.getComment() != null ? patch.getComment() : previousReview.getComment(),
+                                    patch.getRating() != null ? patch.getRating() : previousReview.getRating(),
+                                    previousReview.getVersion() != null ? previousReview.getVersion() + 1 : 1L);
+                            //a new comment doesn't change the stats
+                            if (patch.getMovieInfoId() == null && patch.getRating() == null)
+                                return Mono.just(patchedReview);
+
+                            return reviewStatsRepository.removeFromStats(List.of(previousReview))
+                                    .then(reviewStatsRepository.addToStats(List.of(patchedReview)))
+                                    .thenReturn(patchedReview);
+                        }))
+                .flatMap(patchedReview -> ServerResponse.ok().bodyValue(patchedReview));
+    }
+
+    //nothing was updated, either there's no such review or it's not at the version of the patch anymore
+    private Mono<Review> patchFailure(String reviewId, Review patch){
+        var notFound = Mono.<Review>error(new ReviewNotFoundException("No review found for Review ID " + reviewId));
+        if (patch.getVersion() == null)
+            return notFound;
+
+        return reviewReactiveRepository.existsById(reviewId)
+                .flatMap(exists -> exists
+                        ? Mono.error(new OptimisticLockingFailureException("Review " + reviewId + " isn't at version " + patch.getVersion() + " anymore"))
+                        : notFound);
+    }
+
     public Mono<ServerResponse> deleteReview(ServerRequest request){
         var reviewId = request.pathVariable("id");
         var existingReview = reviewReactiveRepository.findById(reviewId);
 
         return existingReview
                 .flatMap(review -> reviewReactiveRepository.deleteById(reviewId)
+                        .then(reviewStatsRepository.removeFromStats(List.of(review)))
                         .then(ServerResponse.noContent().build()));
     }
+
+    //A line of the bulk import, either a valid review or the reason it was rejected
+    private static class BulkLine {
+        private final long lineNumber;
+        private final Review review;
+        private final String rejectReason;
+
+        BulkLine(long lineNumber, Review review, String rejectReason){
+            this.lineNumber = lineNumber;
+            this.review = review;
+            this.rejectReason = rejectReason;
+        }
+
+        boolean isValid(){
+            return review != null;
+        }
+    }
 }
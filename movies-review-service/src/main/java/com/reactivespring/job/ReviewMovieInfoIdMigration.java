@@ -0,0 +1,96 @@
+package com.reactivespring.job;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.reactivespring.domain.Review;
+import com.reactivespring.repository.ReviewStatsRepository;
+import com.reactivespring.util.MovieInfoIds;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+//One-off migration of the reviews written while Review.movieInfoId was a Long (or a string that is an ObjectId) to
+//the way it's stored now (see MovieInfoIds): numbers become their string, e.g. 1 -> "1" like the _id of the movie,
+//and ObjectId strings become ObjectIds. The reviews left to migrate are streamed from a cursor and updated with
+//unordered bulk writes of migration.reviewMovieInfoId.batchSize reviews. Reviews already migrated don't match the
+//filter, so running it again (e.g. after an interrupted run) only picks up what's left. The review stats are keyed
+//by movieInfoId as well, so they are rebuilt once reviews have been migrated.
+//Opt-in with migration.reviewMovieInfoId.enabled, for the start of a single instance after the upgrade.
+@Component
+@ConditionalOnProperty(name = "migration.reviewMovieInfoId.enabled", havingValue = "true")
+@Slf4j
+public class ReviewMovieInfoIdMigration {
+
+    private static final String OBJECT_ID_PATTERN = "^[0-9a-fA-F]{24}$";
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    private ReviewStatsRepository reviewStatsRepository;
+
+    @Value("${migration.reviewMovieInfoId.batchSize:1000}")
+    private int batchSize;
+
+    @Value("${migration.reviewMovieInfoId.timeout:30m}")
+    private Duration timeout;
+
+    public ReviewMovieInfoIdMigration(ReactiveMongoTemplate reactiveMongoTemplate, ReviewStatsRepository reviewStatsRepository) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.reviewStatsRepository = reviewStatsRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        var start = System.nanoTime();
+        var migrated = migrateReviews()
+                .flatMap(count -> count > 0 ? reviewStatsRepository.rebuild().thenReturn(count) : Mono.just(count))
+                .block(timeout);
+
+        if (migrated != null && migrated > 0)
+            log.info("movieInfoId of {} reviews migrated in {} ms", migrated, Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    //emits the number of reviews migrated
+    Mono<Long> migrateReviews() {
+        var toMigrate = Filters.or(
+                Filters.type("movieInfoId", BsonType.INT64),
+                Filters.type("movieInfoId", BsonType.INT32),
+                Filters.type("movieInfoId", BsonType.DOUBLE),
+                Filters.regex("movieInfoId", OBJECT_ID_PATTERN));
+
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(Review.class))
+                .flatMap(collection -> Flux.from(collection.find(toMigrate)
+                                .projection(Projections.include("movieInfoId"))
+                                .batchSize(batchSize))
+                        .map(ReviewMovieInfoIdMigration::migration)
+                        .buffer(batchSize)
+                        //one batch at a time, the cursor is only read as fast as the batches are written
+                        .concatMap(batch -> Mono.from(collection.bulkWrite(batch, new BulkWriteOptions().ordered(false))))
+                        .map(result -> (long) result.getModifiedCount())
+                        .reduce(0L, Long::sum));
+    }
+
+    private static WriteModel<Document> migration(Document review) {
+        var movieInfoId = review.get("movieInfoId");
+        var stringId = movieInfoId instanceof Number
+                ? String.valueOf(((Number) movieInfoId).longValue())
+                : (String) movieInfoId;
+
+        //the filter on the old value leaves the review alone if it was updated in the meantime
+        return new UpdateOneModel<>(
+                Filters.and(Filters.eq("_id", review.get("_id")), Filters.eq("movieInfoId", movieInfoId)),
+                Updates.set("movieInfoId", MovieInfoIds.toStored(stringId)));
+    }
+}
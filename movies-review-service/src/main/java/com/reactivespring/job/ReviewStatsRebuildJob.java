@@ -0,0 +1,47 @@
+package com.reactivespring.job;
+
+import com.reactivespring.repository.ReviewStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//The stats are kept up to date incrementally, this recomputes them from the reviews every night to correct any drift
+//(e.g. a stats update that failed after the review was saved). With rebuildOnStartup the stats of an existing
+//database are computed when the application starts. The increments made while the rebuild runs can be lost when
+//its $out replaces the stats, so it's opt-in with reviewStats.rebuild.enabled, for a single instance.
+@Component
+@ConditionalOnProperty(name = "reviewStats.rebuild.enabled", havingValue = "true")
+@Slf4j
+public class ReviewStatsRebuildJob {
+
+    private ReviewStatsRepository reviewStatsRepository;
+
+    @Value("${reviewStats.rebuild.onStartup:false}")
+    private boolean rebuildOnStartup;
+
+    @Value("${reviewStats.rebuild.timeout:10m}")
+    private Duration timeout;
+
+    public ReviewStatsRebuildJob(ReviewStatsRepository reviewStatsRepository) {
+        this.reviewStatsRepository = reviewStatsRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup)
+            rebuild();
+    }
+
+    @Scheduled(cron = "${reviewStats.rebuild.cron:0 0 3 * * *}")
+    public void rebuild() {
+        var start = System.nanoTime();
+        reviewStatsRepository.rebuild().block(timeout);
+        log.info("Review stats rebuilt in {} ms", Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+}
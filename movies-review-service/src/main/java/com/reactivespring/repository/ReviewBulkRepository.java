@@ -0,0 +1,16 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+//Custom fragment of ReviewReactiveRepository, implemented in ReviewBulkRepositoryImpl
+public interface ReviewBulkRepository {
+
+    //Inserts the reviews with a single unordered insertMany, a review that can't be inserted (e.g. a duplicate
+    //reviewId) doesn't stop the others. Emits the positions in the list of the reviews that weren't inserted
+    //along with the reason, an empty map when all of them were inserted.
+    Mono<Map<Integer, String>> insertUnordered(List<Review> reviews);
+}
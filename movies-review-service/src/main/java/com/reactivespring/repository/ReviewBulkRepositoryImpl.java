@@ -0,0 +1,59 @@
+package com.reactivespring.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.reactivespring.domain.Review;
+import com.reactivespring.util.MovieInfoIds;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class ReviewBulkRepositoryImpl implements ReviewBulkRepository {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewBulkRepositoryImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<Map<Integer, String>> insertUnordered(List<Review> reviews) {
+        if (reviews.isEmpty())
+            return Mono.just(Map.of());
+
+        //the documents are mapped the same way save() maps them, the driver adds an ObjectId where there's no reviewId
+        var documents = reviews.stream()
+                .map(review -> {
+                    if (review.getVersion() == null)
+                        review.setVersion(0L);//what save() starts a new review at
+                    var document = new Document();
+                    reactiveMongoTemplate.getConverter().write(review, document);
+                    if (review.getMovieInfoId() != null)
+                        document.put("movieInfoId", MovieInfoIds.toStored(review.getMovieInfoId()));//as ReviewMovieInfoIdCallback does for save()
+                    return document;
+                })
+                .collect(Collectors.toList());
+
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(Review.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .map(insertManyResult -> Map.<Integer, String>of())
+                //unordered, so the write errors are the only documents that weren't inserted
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(ex.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage))))
+                .doOnNext(failedInserts -> copyGeneratedIds(reviews, documents));
+    }
+
+    //the driver puts the ObjectId it generates on the document, the reviews get it like save() would give it to them
+    private static void copyGeneratedIds(List<Review> reviews, List<Document> documents) {
+        for (int i = 0; i < reviews.size(); i++) {
+            var id = documents.get(i).get("_id");
+            if (reviews.get(i).getReviewId() == null && id != null)
+                reviews.get(i).setReviewId(id.toString());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Mono;
+
+//Custom fragment of ReviewReactiveRepository, implemented in ReviewPatchRepositoryImpl
+public interface ReviewPatchRepository {
+
+    //Sets the non-null fields of the patch (but the ID) on the review and increments its version, in a single
+    //findAndModify. If the patch has a version only the review with that version is updated. Emits the review as
+    //it was before the update (the stats need both), or nothing if there's no review with that ID (and version).
+    Mono<Review> patch(String reviewId, Review patch);
+}
@@ -0,0 +1,36 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.util.MovieInfoIds;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+public class ReviewPatchRepositoryImpl implements ReviewPatchRepository {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewPatchRepositoryImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<Review> patch(String reviewId, Review patch) {
+        var criteria = Criteria.where("reviewId").is(reviewId);
+        if (patch.getVersion() != null)
+            criteria.and("version").is(patch.getVersion());
+
+        var update = new Update().inc("version", 1);
+        if (patch.getMovieInfoId() != null)
+            update.set("movieInfoId", MovieInfoIds.toStored(patch.getMovieInfoId()));
+        if (patch.getComment() != null)
+            update.set("comment", patch.getComment());
+        if (patch.getRating() != null)
+            update.set("rating", patch.getRating());
+
+        //findAndModify returns the document as it was before the update by default
+        return reactiveMongoTemplate.findAndModify(Query.query(criteria), update, Review.class);
+    }
+}
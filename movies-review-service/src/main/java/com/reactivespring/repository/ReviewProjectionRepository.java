@@ -0,0 +1,25 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+//Custom fragment of ReviewReactiveRepository, implemented in ReviewProjectionRepositoryImpl. The reads of
+//GET /v1/reviews, only the fields asked for (see ReviewFields) and the _id are read from Mongo. With null fields
+//the whole documents are read.
+public interface ReviewProjectionRepository {
+
+    //the movieInfoIds as they are stored, see MovieInfoIds.toStored
+    Flux<Review> findReviewByMovieInfoId(Object movieInfoId, Collection<String> fields);
+    //the Pageable carries the number of reviews and the sort, e.g. the top rated reviews of a movie
+    Flux<Review> findReviewByMovieInfoId(Object movieInfoId, Pageable pageable, Collection<String> fields);
+    Flux<Review> findReviewByMovieInfoIdIn(Collection<Object> movieInfoIds, Collection<String> fields);
+    Flux<Review> findAllBy(Collection<String> fields);
+
+    //Keyset pagination on _id, the Pageable carries the page size and the sort on _id
+    Flux<Review> findAllBy(Pageable pageable, Collection<String> fields);
+    Flux<Review> findByReviewIdGreaterThan(String reviewId, Pageable pageable, Collection<String> fields);
+    Flux<Review> findByReviewIdGreaterThanEqual(String reviewId, Pageable pageable, Collection<String> fields);
+}
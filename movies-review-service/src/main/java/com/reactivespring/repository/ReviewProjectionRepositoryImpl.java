@@ -0,0 +1,68 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.ProjectedReview;
+import com.reactivespring.domain.Review;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+public class ReviewProjectionRepositoryImpl implements ReviewProjectionRepository {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewProjectionRepositoryImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Flux<Review> findReviewByMovieInfoId(Object movieInfoId, Collection<String> fields) {
+        return find(Query.query(Criteria.where("movieInfoId").is(movieInfoId)), fields);
+    }
+
+    @Override
+    public Flux<Review> findReviewByMovieInfoId(Object movieInfoId, Pageable pageable, Collection<String> fields) {
+        return find(Query.query(Criteria.where("movieInfoId").is(movieInfoId)).with(pageable), fields);
+    }
+
+    @Override
+    public Flux<Review> findReviewByMovieInfoIdIn(Collection<Object> movieInfoIds, Collection<String> fields) {
+        return find(Query.query(Criteria.where("movieInfoId").in(movieInfoIds)), fields);
+    }
+
+    @Override
+    public Flux<Review> findAllBy(Collection<String> fields) {
+        return find(new Query(), fields);
+    }
+
+    @Override
+    public Flux<Review> findAllBy(Pageable pageable, Collection<String> fields) {
+        return find(new Query().with(pageable), fields);
+    }
+
+    @Override
+    public Flux<Review> findByReviewIdGreaterThan(String reviewId, Pageable pageable, Collection<String> fields) {
+        return find(Query.query(Criteria.where("reviewId").gt(reviewId)).with(pageable), fields);
+    }
+
+    @Override
+    public Flux<Review> findByReviewIdGreaterThanEqual(String reviewId, Pageable pageable, Collection<String> fields) {
+        return find(Query.query(Criteria.where("reviewId").gte(reviewId)).with(pageable), fields);
+    }
+
+    //the property names are mapped to the document fields like in the criteria, e.g. reviewId to _id. The _id is
+    //included explicitly, an empty projection would read the whole document. A projected review doesn't write the
+    //fields that weren't read as nulls.
+    private Flux<Review> find(Query query, Collection<String> fields) {
+        if (fields == null)
+            return reactiveMongoTemplate.find(query, Review.class);
+
+        query.fields().include("reviewId");
+        fields.forEach(field -> query.fields().include(field));
+        return reactiveMongoTemplate.find(query, ProjectedReview.class, reactiveMongoTemplate.getCollectionName(Review.class))
+                .cast(Review.class);
+    }
+}
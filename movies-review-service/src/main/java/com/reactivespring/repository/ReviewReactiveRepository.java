@@ -4,8 +4,9 @@ import com.reactivespring.domain.Review;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
-import java.util.Optional;
-
-public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String> {
-    Flux<Review> findReviewByMovieInfoId(Long movieInfoId);
+public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String>, ReviewBulkRepository,
+        ReviewPatchRepository, ReviewProjectionRepository {
+    //the movieInfoIds as they are stored, see MovieInfoIds.toStored. The reads of the endpoints, with a projection,
+    //are in ReviewProjectionRepository.
+    Flux<Review> findReviewByMovieInfoId(Object movieInfoId);
 }
@@ -0,0 +1,7 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.ReviewStats;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface ReviewStatsRepository extends ReactiveMongoRepository<ReviewStats, String>, ReviewStatsUpdates {
+}
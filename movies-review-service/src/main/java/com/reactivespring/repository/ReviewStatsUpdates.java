@@ -0,0 +1,19 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+//Custom fragment of ReviewStatsRepository, implemented in ReviewStatsUpdatesImpl
+public interface ReviewStatsUpdates {
+
+    //Adds the reviews to the stats of their movies, one upsert per movie
+    Mono<Void> addToStats(Collection<Review> reviews);
+
+    //Takes the reviews out of the stats of their movies, e.g. the old version of an updated review
+    Mono<Void> removeFromStats(Collection<Review> reviews);
+
+    //Recomputes the stats of every movie from the reviews with an aggregation pipeline
+    Mono<Void> rebuild();
+}
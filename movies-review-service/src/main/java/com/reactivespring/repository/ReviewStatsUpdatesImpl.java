@@ -0,0 +1,99 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class ReviewStatsUpdatesImpl implements ReviewStatsUpdates {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewStatsUpdatesImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<Void> addToStats(Collection<Review> reviews) {
+        return increment(reviews, 1);
+    }
+
+    @Override
+    public Mono<Void> removeFromStats(Collection<Review> reviews) {
+        return increment(reviews, -1);
+    }
+
+    private Mono<Void> increment(Collection<Review> reviews, int sign) {
+        var reviewsByMovieInfoId = reviews.stream()
+                .filter(review -> review.getMovieInfoId() != null)
+                .collect(Collectors.groupingBy(Review::getMovieInfoId));
+
+        return Flux.fromIterable(reviewsByMovieInfoId.entrySet())
+                .flatMap(movieReviews -> reactiveMongoTemplate.upsert(query(where("_id").is(movieReviews.getKey())),
+                        statsIncrement(movieReviews.getValue(), sign), ReviewStats.class))
+                .then();
+    }
+
+    //a single $inc with the changes of all the reviews of a movie
+    private static Update statsIncrement(List<Review> reviews, int sign) {
+        var update = new Update().inc("count", sign * reviews.size());
+
+        var ratings = reviews.stream()
+                .map(Review::getRating)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        if (!ratings.isEmpty()) {
+            update.inc("ratingCount", sign * ratings.size())
+                    .inc("ratingSum", sign * ratings.stream().mapToDouble(Double::doubleValue).sum());
+            ratings.stream()
+                    .collect(Collectors.groupingBy(ReviewStats::histogramBucket, Collectors.counting()))
+                    .forEach((bucket, bucketCount) -> update.inc("ratingHistogram." + bucket, sign * bucketCount));
+        }
+        return update;
+    }
+
+    //$out replaces the whole collection once the pipeline is done, so readers see either the old or the new stats.
+    //Increments made while the pipeline runs can be lost, the next rebuild corrects them.
+    @Override
+    public Mono<Void> rebuild() {
+        var bucket = new Document("$cond", List.of(
+                new Document("$gte", List.of("$rating", 0)),
+                new Document("$toString", new Document("$min", List.of(new Document("$floor", "$rating"), 10))),
+                "none"));
+
+        var pipeline = List.of(
+                //one group per movie and rating bucket
+                new Document("$group", new Document("_id", new Document("movieInfoId", "$movieInfoId").append("bucket", bucket))
+                        .append("count", new Document("$sum", 1))
+                        .append("ratingSum", new Document("$sum", "$rating"))),
+                //then one per movie, with the buckets as the histogram
+                new Document("$group", new Document("_id", "$_id.movieInfoId")
+                        .append("count", new Document("$sum", "$count"))
+                        .append("ratingCount", new Document("$sum", new Document("$cond",
+                                List.of(new Document("$eq", List.of("$_id.bucket", "none")), 0, "$count"))))
+                        .append("ratingSum", new Document("$sum", "$ratingSum"))
+                        .append("buckets", new Document("$push", new Document("k", "$_id.bucket").append("v", "$count")))),
+                new Document("$project", new Document("count", 1)
+                        .append("ratingCount", 1)
+                        .append("ratingSum", 1)
+                        .append("ratingHistogram", new Document("$arrayToObject", new Document("$filter",
+                                new Document("input", "$buckets")
+                                        .append("cond", new Document("$ne", List.of("$$this.k", "none"))))))),
+                new Document("$out", reactiveMongoTemplate.getCollectionName(ReviewStats.class)));
+
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(Review.class))
+                .flatMapMany(collection -> collection.aggregate(pipeline).allowDiskUse(true))
+                .then();
+    }
+}
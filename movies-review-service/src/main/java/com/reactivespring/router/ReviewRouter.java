@@ -3,9 +3,12 @@ package com.reactivespring.router;
 import com.reactivespring.handler.ReviewHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicate;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 
 @Configuration//to cr8 a bean to be scanned by the SB appln. to get all the routes.
@@ -17,9 +20,25 @@ public class ReviewRouter {
         return route()
                 .GET("/v1/helloworld", (request -> ServerResponse.ok().bodyValue("HELLO WORLD")))
                 .POST("/v1/reviews", request -> reviewHandler.addReview(request))
+                .POST("/v1/reviews/bulk", contentType(MediaType.APPLICATION_NDJSON),
+                        request -> reviewHandler.bulkAddReviews(request))
+                .GET("/v1/reviews/stats", request -> reviewHandler.getReviewStats(request))
+                .GET("/v1/reviews/stream", request -> reviewHandler.streamNewReviews(request))
+                //streaming variants have to come first, the plain GET matches any Accept header
+                .GET("/v1/reviews", accepts(MediaType.APPLICATION_NDJSON),
+                        request -> reviewHandler.streamReviews(request, MediaType.APPLICATION_NDJSON))
+                .GET("/v1/reviews", accepts(MediaType.TEXT_EVENT_STREAM),
+                        request -> reviewHandler.streamReviews(request, MediaType.TEXT_EVENT_STREAM))
                 .GET("/v1/reviews", request -> reviewHandler.getReviews(request))
                 .PUT("/v1/reviews/{id}", request -> reviewHandler.updateReview(request))
+                .PATCH("/v1/reviews/{id}", request -> reviewHandler.patchReview(request))
                 .DELETE("/v1/reviews/{id}", request -> reviewHandler.deleteReview(request))
                 .build();
     }
+
+    //RequestPredicates.accept() also matches */*, this only matches clients that ask for the media type itself
+    private static RequestPredicate accepts(MediaType mediaType){
+        return request -> request.headers().accept().stream()
+                .anyMatch(accepted -> accepted.equalsTypeAndSubtype(mediaType));
+    }
 }
@@ -0,0 +1,26 @@
+package com.reactivespring.util;
+
+import org.bson.types.ObjectId;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+//Review.movieInfoId is the _id of the movie in movies-info-service and is stored the way Spring Data stores that
+//_id: as an ObjectId (12 bytes) when it's the hex string of one, i.e. a generated ID, and as the string otherwise
+//(IDs given by the client, e.g. "MIS001"). That way the reviews of a movie are found with the same value in both
+//services. The conversion is only done for _id fields by Spring Data, so the queries and writes on
+//Review.movieInfoId go through here.
+public final class MovieInfoIds {
+
+    private MovieInfoIds(){
+    }
+
+    public static Object toStored(String movieInfoId){
+        return movieInfoId != null && ObjectId.isValid(movieInfoId) ? new ObjectId(movieInfoId) : movieInfoId;
+    }
+
+    public static List<Object> toStored(Collection<String> movieInfoIds){
+        return movieInfoIds.stream().map(MovieInfoIds::toStored).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,34 @@
+package com.reactivespring.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+//The fields= parameter of GET /v1/reviews, e.g. fields=movieInfoId,rating. The JSON names are the Review properties
+//the Mongo projection is made of, the _id is always read on top of them.
+public final class ReviewFields {
+
+    private static final Set<String> PROPERTIES = Set.of("reviewId", "movieInfoId", "comment", "rating", "version");
+
+    private ReviewFields(){
+    }
+
+    //null (all the fields) without a fields= parameter, throws IllegalArgumentException for an unknown field
+    public static List<String> parse(String fields){
+        if (fields == null)
+            return null;
+
+        var properties = new ArrayList<String>();
+        for (var field : fields.split(",")) {
+            var name = field.trim();
+            if (name.isEmpty())
+                continue;
+
+            if (!PROPERTIES.contains(name))
+                throw new IllegalArgumentException("Unknown field: " + name);
+
+            properties.add(name);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,59 @@
+package com.reactivespring.job;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.util.MovieInfoIds;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"migration.reviewMovieInfoId.enabled=true", "migration.reviewMovieInfoId.batchSize=2"})
+class ReviewMovieInfoIdMigrationIntgTest {
+
+    @Autowired
+    ReviewMovieInfoIdMigration migration;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+    }
+
+    @Test
+    void testMigrateReviews() {
+        var generatedId = new ObjectId();
+        //reviews as they were written while movieInfoId was a Long, and one already stored the new way
+        reactiveMongoTemplate.insert(List.of(
+                new Document("_id", "r1").append("movieInfoId", 1L).append("rating", 9.0),
+                new Document("_id", "r2").append("movieInfoId", 1L).append("rating", 8.0),
+                new Document("_id", "r3").append("movieInfoId", generatedId.toHexString()).append("rating", 7.0),
+                new Document("_id", "r4").append("movieInfoId", "MIS001").append("rating", 6.0)),
+                reactiveMongoTemplate.getCollectionName(Review.class)).blockLast();
+
+        assertEquals(3L, migration.migrateReviews().block());
+
+        assertEquals(2L, reviewReactiveRepository.findReviewByMovieInfoId(MovieInfoIds.toStored("1")).count().block());
+        assertEquals(1L, reviewReactiveRepository.findReviewByMovieInfoId(generatedId).count().block());
+        assertEquals(1L, reviewReactiveRepository.findReviewByMovieInfoId("MIS001").count().block());
+
+        //nothing left to migrate
+        assertEquals(0L, migration.migrateReviews().block());
+    }
+}
@@ -1,6 +1,10 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.domain.BulkInsertResult;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.handler.ReviewFeed;
+import com.reactivespring.repository.ReviewStatsRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,12 +12,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -27,12 +34,18 @@ public class ReviewsIntgTest {
     @Autowired
     ReactiveMongoRepository reactiveMongoRepository;
 
+    @Autowired
+    ReviewStatsRepository reviewStatsRepository;
+
+    @Autowired
+    ReviewFeed reviewFeed;
+
     @BeforeEach
     void setUp() {
 
-        var reviewList = List.of(new Review(null, 1L, "Awesome", 9.0),
-                new Review(null, 2L, "Very Good", 8.5),
-                new Review(null, 3L, "Good", 8.0));
+        var reviewList = List.of(new Review(null, "1", "Awesome", 9.0),
+                new Review(null, "2", "Very Good", 8.5),
+                new Review(null, "3", "Good", 8.0));
 
         reactiveMongoRepository.saveAll(reviewList).blockLast();
     }
@@ -40,12 +53,13 @@ public class ReviewsIntgTest {
     @AfterEach
     void tearDown() {
         reactiveMongoRepository.deleteAll().block();
+        reviewStatsRepository.deleteAll().block();
     }
 
     @Test
     void testAddReview(){
 
-        var movieReview = new Review(null, 2L, "Very Good", 8.5);
+        var movieReview = new Review(null, "2", "Very Good", 8.5);
         
         webTestClient
                 .post()
@@ -75,4 +89,107 @@ public class ReviewsIntgTest {
                     assertEquals(reviews.size(), 3);
                 });
     }
+
+    @Test
+    void testBulkAddReviews(){
+        var body = String.join("\n",
+                "{\"reviewId\": \"bulk1\", \"movieInfoId\": 4, \"comment\": \"Awesome\", \"rating\": 9.0}",
+                "{\"reviewId\": \"bulk1\", \"movieInfoId\": 4, \"comment\": \"Duplicate\", \"rating\": 9.0}",
+                "{\"movieInfoId\": 4, \"comment\": \"Good\", \"rating\": 8.0}",
+                "{\"comment\": \"No movie\", \"rating\": 8.0}");
+
+        webTestClient.post()
+                .uri(REVIEWS_URL + "/reviews/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(BulkInsertResult.class)
+                .value(results -> {
+                    assertEquals(1, results.size());
+                    assertEquals(2, results.get(0).getInserted());
+                    assertEquals(2, results.get(0).getRejected().size());
+                    assertEquals(2L, results.get(0).getRejected().get(0).getLine());//the duplicate reviewId
+                    assertEquals(4L, results.get(0).getRejected().get(1).getLine());
+                });
+
+        assertEquals(5, reactiveMongoRepository.count().block());
+    }
+
+    @Test
+    void testBulkAddReviewsPublishesIds(){
+        var body = String.join("\n",
+                "{\"reviewId\": \"bulk2\", \"movieInfoId\": 7, \"comment\": \"Awesome\", \"rating\": 9.0}",
+                "{\"movieInfoId\": 7, \"comment\": \"Good\", \"rating\": 8.0}");
+
+        webTestClient.post()
+                .uri(REVIEWS_URL + "/reviews/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+
+        //the review without a reviewId reaches the feed with the ID it was stored with
+        var publishedIds = reviewFeed.newReviews("7", null)
+                .filter(event -> event.data() != null)
+                .map(event -> event.data().getReviewId())
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        assertNotNull(publishedIds);
+        assertEquals("bulk2", publishedIds.get(0));
+        assertNotNull(publishedIds.get(1));
+        assertNotNull(reactiveMongoRepository.findById(publishedIds.get(1)).block());
+    }
+
+    @Test
+    void testReviewStats(){
+        //the reviews of setUp() were saved directly, the rebuild counts them
+        reviewStatsRepository.rebuild().block();
+
+        webTestClient.post()
+                .uri(REVIEWS_URL + "/reviews")
+                .bodyValue(new Review(null, "1", "Good", 8.0))
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/reviews/stats?movieInfoId=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(ReviewStats.class)
+                .value(stats -> {
+                    assertEquals(2, stats.getCount());
+                    assertEquals(8.5, stats.getAverageRating());
+                    assertEquals(1L, stats.getRatingHistogram().get("8"));
+                    assertEquals(1L, stats.getRatingHistogram().get("9"));
+                });
+    }
+
+    @Test
+    void testPatchReview(){
+        var review = reactiveMongoRepository.save(new Review(null, "5", "Good", 8.0)).block();
+        var reviewId = ((Review) review).getReviewId();
+
+        webTestClient.patch()
+                .uri(REVIEWS_URL + "/reviews/{id}", reviewId)
+                .bodyValue(Map.of("comment", "Very Good", "version", 0))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(Review.class)
+                .isEqualTo(new Review(reviewId, "5", "Very Good", 8.0, 1L));
+
+        //the review isn't at version 0 anymore
+        webTestClient.patch()
+                .uri(REVIEWS_URL + "/reviews/{id}", reviewId)
+                .bodyValue(Map.of("comment", "Awesome", "version", 0))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+    }
 }
@@ -0,0 +1,71 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.domain.Review;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReviewFeedTest {
+
+    @Test
+    void newReviewsReplaysTheReviewsOfTheMovie() {
+        var reviewFeed = new ReviewFeed(10, Duration.ofMinutes(1), 16, Duration.ofHours(1));
+        reviewFeed.publish(new Review("abc", "1", "Awesome Movie", 9.0));
+        reviewFeed.publish(new Review("abd", "2", "Very Good", 8.5));
+
+        StepVerifier.create(reviewFeed.newReviews("1", null).filter(event -> event.data() != null))
+                .assertNext(event -> assertEquals("abc", event.data().getReviewId()))
+                .then(() -> reviewFeed.publish(new Review("abe", "1", "Good", 8.0)))
+                .assertNext(event -> assertEquals("abe", event.data().getReviewId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void newReviewsSkipsTheReviewsUpToTheLastEventId() {
+        var reviewFeed = new ReviewFeed(10, Duration.ofMinutes(1), 16, Duration.ofHours(1));
+        reviewFeed.publish(new Review("abc", "1", "Awesome Movie", 9.0));
+        reviewFeed.publish(new Review("abd", "1", "Very Good", 8.5));
+
+        var firstEventId = reviewFeed.newReviews("1", null)
+                .filter(event -> event.data() != null)
+                .map(ServerSentEvent::id)
+                .blockFirst(Duration.ofSeconds(5));
+
+        StepVerifier.create(reviewFeed.newReviews("1", firstEventId).filter(event -> event.data() != null))
+                .assertNext(event -> assertEquals("abd", event.data().getReviewId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        //an ID of a previous run skips nothing
+        StepVerifier.create(reviewFeed.newReviews("1", "00000000-1").filter(event -> event.data() != null))
+                .expectNextCount(2)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void newReviewsDropsASlowSubscriber() {
+        var reviewFeed = new ReviewFeed(10, Duration.ofMinutes(1), 2, Duration.ofHours(1));
+
+        //the subscriber doesn't request anything while the reviews are added, they overflow its buffer of 2 events,
+        //so it's cut off from the feed and its stream ends once it has taken what was buffered
+        StepVerifier.create(reviewFeed.newReviews("1", null), 0)
+                .expectSubscription()
+                .then(() -> {
+                    for (int i = 0; i < 5; i++)
+                        reviewFeed.publish(new Review("ab" + i, "1", "Review " + i, 8.0));
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .recordWith(ArrayList::new)
+                .thenConsumeWhile(event -> true)
+                .expectRecordedMatches(events -> events.size() <= 2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+}
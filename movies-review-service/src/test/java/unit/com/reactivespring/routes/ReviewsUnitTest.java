@@ -1,42 +1,81 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.config.SmileCodecConfig;
+import com.reactivespring.domain.BulkInsertResult;
+import com.reactivespring.domain.ProjectedReview;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exception.exceptionhandler.GlobalErrorHandler;
+import com.reactivespring.handler.ReviewFeed;
 import com.reactivespring.handler.ReviewHandler;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
 import com.reactivespring.router.ReviewRouter;
+import com.reactivespring.util.PageCursor;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.reactivespring.config.SmileCodecConfig.APPLICATION_SMILE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest
-@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, GlobalErrorHandler.class})
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, ReviewFeed.class, GlobalErrorHandler.class,
+        SmileCodecConfig.class})
 @AutoConfigureWebTestClient
 public class ReviewsUnitTest {
 
     @MockBean
     private ReviewReactiveRepository reviewReactiveRepository;
 
+    @MockBean
+    private ReviewStatsRepository reviewStatsRepository;
+
     @Autowired
     private WebTestClient webTestClient;
 
     private static final String REVIEWS_URL = "/v1";
 
+    @BeforeEach
+    void setUp() {
+        when(reviewStatsRepository.addToStats(any())).thenReturn(Mono.empty());
+        when(reviewStatsRepository.removeFromStats(any())).thenReturn(Mono.empty());
+    }
+
     @Test
     void testAddReview(){
-        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+        var review = new Review(null, "1", "Awesome Movie", 9.0);
 
         when(reviewReactiveRepository.save(isA(Review.class)))
-                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+                .thenReturn(Mono.just(new Review("abc", "1", "Awesome Movie", 9.0)));
 
         webTestClient
                 .post()
@@ -58,7 +97,7 @@ public class ReviewsUnitTest {
         var review = new Review(null, null, "Awesome Movie", -9.0);
 
         when(reviewReactiveRepository.save(isA(Review.class)))
-                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+                .thenReturn(Mono.just(new Review("abc", "1", "Awesome Movie", 9.0)));
 
         webTestClient
                 .post()
@@ -71,5 +110,372 @@ public class ReviewsUnitTest {
                 .isEqualTo("review.movieInfoId must not be null, review.rating must not be negative");
     }
 
+    @Test
+    void testGetReviewsPage(){
+        var reviews = List.of(new Review("abc", "1", "Awesome Movie", 9.0),
+                new Review("abd", "1", "Very Good", 8.5),
+                new Review("abe", "2", "Good", 8.0));
+
+        //the handler asks for one more review than the limit to find out if there's a next page
+        when(reviewReactiveRepository.findByReviewIdGreaterThan(eq("abb"), isA(Pageable.class), isNull()))
+                .thenReturn(Flux.fromIterable(reviews));
+        when(reviewReactiveRepository.findByReviewIdGreaterThanEqual(eq("000000000000000000000000"), isA(Pageable.class), isNull()))
+                .thenReturn(Flux.empty());
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews?limit=2&cursor={cursor}", PageCursor.encode("abb"))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode("abd"))
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void testGetReviewsLastPage(){
+        when(reviewReactiveRepository.findAllBy(isA(Pageable.class), isNull()))
+                .thenReturn(Flux.just(new Review("abc", "1", "Awesome Movie", 9.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews?limit=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .doesNotExist(PageCursor.NEXT_CURSOR_HEADER)
+                .expectBodyList(Review.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void testStreamReviews(){
+        when(reviewReactiveRepository.findReviewByMovieInfoId("1", null))
+                .thenReturn(Flux.just(new Review("abc", "1", "Awesome Movie", 9.0),
+                        new Review("abd", "1", "Very Good", 8.5)));
+
+        var reviewFlux = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews?movieInfoId=1")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Review.class)
+                .getResponseBody();
+
+        StepVerifier.create(reviewFlux)
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void testGetReviewsSmile(){
+        var reviews = List.of(new Review("abc", "1", "Awesome Movie", 9.0),
+                new Review("abd", "1", "Very Good", 8.5));
+        when(reviewReactiveRepository.findReviewByMovieInfoId("1", null)).thenReturn(Flux.fromIterable(reviews));
+
+        //what movies-service asks for, the plain GET route answers with Smile instead of JSON
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews?movieInfoId=1")
+                .accept(APPLICATION_SMILE, MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(APPLICATION_SMILE)
+                .expectBodyList(Review.class)
+                .isEqualTo(reviews);
+    }
+
+    @Test
+    void testGetReviewsFields(){
+        var projectedReview = new ProjectedReview();
+        projectedReview.setReviewId("abc");
+        projectedReview.setRating(9.0);
+        when(reviewReactiveRepository.findReviewByMovieInfoId("1", List.of("rating")))
+                .thenReturn(Flux.just(projectedReview));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews?movieInfoId=1&fields=rating")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$[0].reviewId").isEqualTo("abc")
+                .jsonPath("$[0].rating").isEqualTo(9.0)
+                .jsonPath("$[0].comment").doesNotExist();
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews?movieInfoId=1&fields=rating,likes")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void testGetReviewsKeepsNulls(){
+        when(reviewReactiveRepository.findReviewByMovieInfoId("1", null))
+                .thenReturn(Flux.just(new Review("abc", "1", null, 9.0)));
+
+        //a whole review is written as it always was, with the fields that aren't set as nulls
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews?movieInfoId=1")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(String.class)
+                .value(body -> assertTrue(body.contains("\"comment\":null"), body));
+    }
+
+    @Test
+    void testGetReviewsOfGeneratedMovieInfoId(){
+        //a generated movie ID is looked up as the ObjectId it's stored as
+        var movieInfoId = "5f2b9a1c8e4b0c6d7e8f9a0b";
+        when(reviewReactiveRepository.findReviewByMovieInfoId(new ObjectId(movieInfoId), null))
+                .thenReturn(Flux.just(new Review("abc", movieInfoId, "Awesome Movie", 9.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews?movieInfoId={id}", movieInfoId)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$[0].movieInfoId").isEqualTo(movieInfoId);
+    }
+
+    @Test
+    void testBulkAddReviews(){
+        var body = String.join("\n",
+                "{\"movieInfoId\": 1, \"comment\": \"Awesome Movie\", \"rating\": 9.0}",
+                "{\"movieInfoId\": 1, \"comment\": ",
+                "{\"movieInfoId\": 1, \"comment\": \"Bad\", \"rating\": -1.0}",
+                "",
+                "{\"reviewId\": \"abc\", \"movieInfoId\": 2, \"comment\": \"Very Good\", \"rating\": 8.5}");
+
+        //the two valid reviews go to a single insertMany, the second one is a duplicate
+        when(reviewReactiveRepository.insertUnordered(argThat(reviews -> reviews.size() == 2)))
+                .thenReturn(Mono.just(Map.of(1, "E11000 duplicate key error")));
 
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/reviews/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(BulkInsertResult.class)
+                .value(results -> {
+                    assertEquals(1, results.size());
+                    var result = results.get(0);
+                    assertEquals(1, result.getBatch());
+                    assertEquals(1, result.getInserted());
+                    assertEquals(List.of(2L, 3L, 5L), result.getRejected().stream()
+                            .map(BulkInsertResult.RejectedLine::getLine)
+                            .collect(Collectors.toList()));
+                    assertEquals("review.rating must not be negative", result.getRejected().get(1).getReason());
+                    assertEquals("E11000 duplicate key error", result.getRejected().get(2).getReason());
+                });
+
+        //only the review that was inserted is added to the stats
+        verify(reviewStatsRepository).addToStats(argThat(reviews -> reviews.size() == 1
+                && reviews.iterator().next().getMovieInfoId().equals("1")));
+    }
+
+    @Test
+    void testUpdateReviewUpdatesStats(){
+        when(reviewReactiveRepository.findById("abc"))
+                .thenReturn(Mono.just(new Review("abc", "1", "Awesome Movie", 9.0)));
+        when(reviewReactiveRepository.save(isA(Review.class)))
+                .thenReturn(Mono.just(new Review("abc", "1", "Good Movie", 7.0)));
+
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/reviews/abc")
+                .bodyValue(new Review("abc", "1", "Good Movie", 7.0))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+
+        //the old rating is taken out of the stats and the new one added
+        verify(reviewStatsRepository).removeFromStats(argThat(reviews -> reviews.iterator().next().getRating() == 9.0));
+        verify(reviewStatsRepository).addToStats(argThat(reviews -> reviews.iterator().next().getRating() == 7.0));
+    }
+
+    @Test
+    void testUpdateReviewKeepsIdAndVersion(){
+        when(reviewReactiveRepository.findById("abc"))
+                .thenReturn(Mono.just(new Review("abc", "1", "Awesome Movie", 9.0, 3L)));
+        when(reviewReactiveRepository.save(isA(Review.class)))
+                .thenReturn(Mono.just(new Review("abc", "1", "Good Movie", 7.0, 4L)));
+
+        //no reviewId and a stale version in the body
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/reviews/abc")
+                .bodyValue(new Review(null, "1", "Good Movie", 7.0, 1L))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+
+        verify(reviewReactiveRepository).save(argThat(review -> "abc".equals(review.getReviewId()) && review.getVersion() == 3L));
+    }
+
+    @Test
+    void testAddReviewExistingId(){
+        when(reviewReactiveRepository.save(isA(Review.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error collection: review")));
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/reviews")
+                .bodyValue(new Review("abc", "1", "Awesome Movie", 9.0))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+    }
+
+    @Test
+    void testPatchReview(){
+        when(reviewReactiveRepository.patch(eq("abc"), argThat(patch -> patch.getRating() == 7.0 && patch.getComment() == null)))
+                .thenReturn(Mono.just(new Review("abc", "1", "Awesome Movie", 9.0, 3L)));
+
+        webTestClient
+                .patch()
+                .uri(REVIEWS_URL + "/reviews/abc")
+                .bodyValue(Map.of("rating", 7.0, "version", 3))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(Review.class)
+                .isEqualTo(new Review("abc", "1", "Awesome Movie", 7.0, 4L));
+
+        verify(reviewStatsRepository).removeFromStats(argThat(reviews -> reviews.iterator().next().getRating() == 9.0));
+        verify(reviewStatsRepository).addToStats(argThat(reviews -> reviews.iterator().next().getRating() == 7.0));
+    }
+
+    @Test
+    void testPatchReviewConflict(){
+        when(reviewReactiveRepository.patch(eq("abc"), isA(Review.class))).thenReturn(Mono.empty());
+        when(reviewReactiveRepository.existsById("abc")).thenReturn(Mono.just(true));
+
+        webTestClient
+                .patch()
+                .uri(REVIEWS_URL + "/reviews/abc")
+                .bodyValue(Map.of("rating", 7.0, "version", 2))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+    }
+
+    @Test
+    void testPatchReviewValidation(){
+        webTestClient
+                .patch()
+                .uri(REVIEWS_URL + "/reviews/abc")
+                .bodyValue(Map.of("rating", -1.0))
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.rating must not be negative");
+    }
+
+    @Test
+    void testGetReviewStats(){
+        when(reviewStatsRepository.findAllById(List.of("1", "2")))
+                .thenReturn(Flux.just(new ReviewStats("1", 2, 2, 17.0, Map.of("8", 1L, "9", 1L))));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews/stats?movieInfoIds=1,2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].count").isEqualTo(2)
+                .jsonPath("$[0].averageRating").isEqualTo(8.5)
+                .jsonPath("$[0].ratingHistogram.9").isEqualTo(1)
+                //no reviews for movie 2
+                .jsonPath("$[1].movieInfoId").isEqualTo("2")
+                .jsonPath("$[1].count").isEqualTo(0);
+    }
+
+    @Test
+    void testGetTopReviews(){
+        when(reviewReactiveRepository.findReviewByMovieInfoId(eq("1"),
+                argThat((Pageable page) -> page.getPageSize() == 2 && page.getSort().getOrderFor("rating").isDescending()), isNull()))
+                .thenReturn(Flux.just(new Review("abc", "1", "Awesome Movie", 9.0),
+                        new Review("abd", "1", "Very Good", 8.5)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews?movieInfoId=1&top=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void testGetTopReviewsInvalidTop(){
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews?movieInfoId=1&top=five")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("top must be a number");
+    }
+
+    @Test
+    void testStreamNewReviews(){
+        when(reviewReactiveRepository.save(isA(Review.class)))
+                .thenReturn(Mono.just(new Review("abc", "7", "Awesome Movie", 9.0)))
+                .thenReturn(Mono.just(new Review("abd", "8", "Very Good", 8.5)));
+
+        //added before the client connects, the client gets them from the replay window of the feed
+        for (var review : List.of(new Review(null, "7", "Awesome Movie", 9.0), new Review(null, "8", "Very Good", 8.5))) {
+            webTestClient
+                    .post()
+                    .uri(REVIEWS_URL + "/reviews")
+                    .bodyValue(review)
+                    .exchange()
+                    .expectStatus()
+                    .isCreated();
+        }
+
+        var events = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/reviews/stream?movieInfoId=7")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<Review>>() {})
+                .getResponseBody()
+                .filter(event -> event.data() != null);//skips the heartbeats
+
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertEquals("review", event.event());
+                    assertEquals("abc", event.data().getReviewId());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
 }
@@ -0,0 +1,36 @@
+package com.reactivespring.benchmark;
+
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+//Test data shaped like the production payloads, a review comment is a couple of sentences long
+final class BenchmarkData {
+
+    private static final String COMMENT = "Nolan's take on the origin story is darker and more grounded than the earlier films. "
+            + "Great performances all round, although the second half drags a bit.";
+
+    private BenchmarkData(){
+    }
+
+    static MovieInfo movieInfo(){
+        return new MovieInfo("5f2b9a1c8e4b0c6d7e8f9a0b", "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Caine", "Liam Neeson", "Katie Holmes", "Gary Oldman"),
+                LocalDate.parse("2005-06-15"));
+    }
+
+    static List<Review> reviews(int reviewCount){
+        return LongStream.range(0, reviewCount)
+                .mapToObj(i -> new Review(String.format("%024x", i), "1", COMMENT, (double) (i % 10)))
+                .collect(Collectors.toList());
+    }
+
+    static Movie movie(int reviewCount){
+        return new Movie(movieInfo(), reviews(reviewCount));
+    }
+}
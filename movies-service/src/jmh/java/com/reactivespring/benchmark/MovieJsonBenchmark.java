@@ -0,0 +1,73 @@
+package com.reactivespring.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Jackson (de)serialisation of the payloads movies-service reads from the downstream services and writes to its clients.
+//Run with -prof gc (the default in build.gradle) to see the bytes allocated per operation next to the throughput.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MovieJsonBenchmark {
+
+    @Param({"1", "50", "500", "5000"})
+    private int reviewCount;
+
+    //configured the same way as the ObjectMapper Spring Boot gives to the WebFlux codecs
+    private ObjectMapper objectMapper;
+
+    private Movie movie;
+    private MovieInfo movieInfo;
+    private List<Review> reviews;
+    private byte[] movieJson;
+    private byte[] movieInfoJson;
+    private byte[] reviewsJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        movie = BenchmarkData.movie(reviewCount);
+        movieInfo = movie.getMovieInfo();
+        reviews = movie.getReviewList();
+        movieJson = objectMapper.writeValueAsBytes(movie);
+        movieInfoJson = objectMapper.writeValueAsBytes(movieInfo);
+        reviewsJson = objectMapper.writeValueAsBytes(reviews);
+    }
+
+    @Benchmark
+    public byte[] serializeMovie() throws IOException {
+        return objectMapper.writeValueAsBytes(movie);
+    }
+
+    @Benchmark
+    public Movie deserializeMovie() throws IOException {
+        return objectMapper.readValue(movieJson, Movie.class);
+    }
+
+    @Benchmark
+    public Review[] deserializeReviews() throws IOException {
+        return objectMapper.readValue(reviewsJson, Review[].class);
+    }
+
+    //doesn't depend on reviewCount, only the first run of the parameters is worth looking at
+    @Benchmark
+    public MovieInfo deserializeMovieInfo() throws IOException {
+        return objectMapper.readValue(movieInfoJson, MovieInfo.class);
+    }
+
+    @Benchmark
+    public byte[] serializeMovieInfo() throws IOException {
+        return objectMapper.writeValueAsBytes(movieInfo);
+    }
+}
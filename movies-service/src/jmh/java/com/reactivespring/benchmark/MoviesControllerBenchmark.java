@@ -0,0 +1,73 @@
+package com.reactivespring.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.config.MovieInfoCacheProperties;
+import com.reactivespring.config.RetryProperties;
+import com.reactivespring.controller.MoviesController;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.util.RetryUtil;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+//MoviesController.retrieveMovieById with clients that answer straight away, so only the aggregation is measured:
+//the zip of the two calls, the reviews timeout/fallback operators, collecting the reviews into the Movie and its ETag.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoviesControllerBenchmark {
+
+    @Param({"1", "50", "500", "5000"})
+    private int reviewCount;
+
+    private MoviesController moviesController;
+
+    @Setup
+    public void setUp() {
+        var movieInfo = BenchmarkData.movieInfo();
+        var reviews = BenchmarkData.reviews(reviewCount);
+
+        var meterRegistry = new SimpleMeterRegistry();
+        var retryUtil = new RetryUtil(new RetryProperties(), meterRegistry);
+        var cacheProperties = new MovieInfoCacheProperties();
+        cacheProperties.setEnabled(false);
+
+        var moviesInfoRestClient = new MoviesInfoRestClient(WebClient.create(), retryUtil,
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), cacheProperties, meterRegistry) {
+            @Override
+            public Mono<MovieInfo> retrieveMovieInfo(String movieId, String fields) {
+                return Mono.just(movieInfo);
+            }
+        };
+        var reviewsRestClient = new ReviewsRestClient(WebClient.create(), retryUtil,
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults()) {
+            @Override
+            public Flux<Review> retrieveReviews(String movieId, String fields) {
+                return Flux.fromIterable(reviews);
+            }
+        };
+
+        moviesController = new MoviesController(moviesInfoRestClient, reviewsRestClient,
+                new ObjectMapper().registerModule(new JavaTimeModule()), Duration.ofSeconds(5), true, 100);
+    }
+
+    @Benchmark
+    public Movie retrieveMovieById() {
+        return moviesController.retrieveMovieById("5f2b9a1c8e4b0c6d7e8f9a0b", null, null, null).block().getBody();
+    }
+}
@@ -0,0 +1,96 @@
+package com.reactivespring.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.config.SmileCodecConfig;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//JSON vs Smile for the payloads movies-service reads from the downstream services. The responses are decoded with
+//the same WebFlux decoders as the WebClient uses, the reviews a value at a time out of the array.
+//The payload sizes are printed once per fork, e.g. "smile, 500 reviews: 91234 bytes (movie info 187 bytes)".
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    @Param({"json", "smile"})
+    private String format;
+
+    @Param({"1", "50", "500", "5000"})
+    private int reviewCount;
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private ObjectMapper objectMapper;
+    private Decoder<Object> decoder;
+    private MediaType mediaType;
+
+    private MovieInfo movieInfo;
+    private List<Review> reviews;
+    private byte[] movieInfoBytes;
+    private byte[] reviewsBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (format.equals("smile")) {
+            objectMapper = Jackson2ObjectMapperBuilder.smile().build();
+            decoder = new Jackson2SmileDecoder(objectMapper, SmileCodecConfig.APPLICATION_SMILE);
+            mediaType = SmileCodecConfig.APPLICATION_SMILE;
+        } else {
+            objectMapper = Jackson2ObjectMapperBuilder.json().build();
+            decoder = new Jackson2JsonDecoder(objectMapper);
+            mediaType = MediaType.APPLICATION_JSON;
+        }
+
+        movieInfo = BenchmarkData.movieInfo();
+        reviews = BenchmarkData.reviews(reviewCount);
+        movieInfoBytes = objectMapper.writeValueAsBytes(movieInfo);
+        reviewsBytes = objectMapper.writeValueAsBytes(reviews);
+
+        System.out.printf("%n%s, %d reviews: %d bytes (movie info %d bytes)%n",
+                format, reviewCount, reviewsBytes.length, movieInfoBytes.length);
+    }
+
+    //what the downstream services spend writing the response
+    @Benchmark
+    public byte[] encodeReviews() throws IOException {
+        return objectMapper.writeValueAsBytes(reviews);
+    }
+
+    @Benchmark
+    public List<Object> decodeReviews() {
+        return decoder.decode(Flux.just(wrap(reviewsBytes)), ResolvableType.forClass(Review.class), mediaType, Map.of())
+                .collectList()
+                .block();
+    }
+
+    //doesn't depend on reviewCount, only the first run of the parameters is worth looking at
+    @Benchmark
+    public Object decodeMovieInfo() {
+        return decoder.decodeToMono(Mono.just(wrap(movieInfoBytes)), ResolvableType.forClass(MovieInfo.class), mediaType, Map.of())
+                .block();
+    }
+
+    private DataBuffer wrap(byte[] bytes) {
+        return bufferFactory.wrap(bytes);
+    }
+}
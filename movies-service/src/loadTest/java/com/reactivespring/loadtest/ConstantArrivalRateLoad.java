@@ -0,0 +1,160 @@
+package com.reactivespring.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+//Open-model load: requests are sent at a constant rate no matter how slow the responses are, and the latency of a
+//request is measured from the time it was scheduled to be sent. A closed model (N users each waiting for their
+//previous response) slows down along with the service and hides the tail latency (coordinated omission).
+@Slf4j
+public class ConstantArrivalRateLoad {
+
+    //latencies are recorded in microseconds, up to an hour with 3 significant digits
+    private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.HOURS.toMicros(1);
+
+    private final LoadTestSettings settings;
+    private final HttpClient httpClient;
+    private final ConnectionProvider connectionProvider;
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_LATENCY, 3);
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public ConstantArrivalRateLoad(LoadTestSettings settings, String moviesServiceURL) {
+        this.settings = settings;
+        //as many connections as requests in flight, so the generator's own pool doesn't queue the requests
+        this.connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(settings.getMaxInFlight())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.httpClient = HttpClient.create(connectionProvider)
+                .baseUrl(moviesServiceURL)
+                .responseTimeout(settings.getRequestTimeout());
+    }
+
+    public Result run() {
+        var periodNanos = TimeUnit.SECONDS.toNanos(1) / settings.getRate();
+        var warmupNanos = settings.getWarmup().toNanos();
+        var totalNanos = warmupNanos + settings.getDuration().toNanos();
+
+        var intervals = new ArrayList<Histogram>();
+        var measuring = false;
+        var nextIntervalNanos = warmupNanos + TimeUnit.SECONDS.toNanos(1);
+
+        log.info("Sending {} requests/s for {} after a warmup of {}", settings.getRate(), settings.getDuration(), settings.getWarmup());
+        var startNanos = System.nanoTime();
+        for (long request = 0; request * periodNanos < totalNanos; request++) {
+            var intendedStartNanos = startNanos + request * periodNanos;
+            var waitNanos = intendedStartNanos - System.nanoTime();
+            if (waitNanos > 0)
+                LockSupport.parkNanos(waitNanos);
+
+            //the responses of the warmup requests are never recorded, the reset only starts the first interval
+            var elapsedNanos = intendedStartNanos - startNanos;
+            if (!measuring && elapsedNanos >= warmupNanos) {
+                recorder.reset();
+                measuring = true;
+            }
+            if (elapsedNanos >= nextIntervalNanos) {
+                intervals.add(recorder.getIntervalHistogram());
+                nextIntervalNanos += TimeUnit.SECONDS.toNanos(1);
+            }
+
+            send(intendedStartNanos, measuring);
+        }
+        var sendEndNanos = System.nanoTime();
+
+        //the outstanding responses are part of the last interval
+        var awaitEndNanos = sendEndNanos + settings.getRequestTimeout().plusSeconds(1).toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < awaitEndNanos)
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        intervals.add(recorder.getIntervalHistogram());
+
+        connectionProvider.disposeLater().block(Duration.ofSeconds(10));
+
+        var total = new Histogram(HIGHEST_TRACKABLE_LATENCY, 3);
+        intervals.forEach(total::add);
+
+        var outcomeCounts = new TreeMap<String, Long>();
+        outcomes.forEach((outcome, count) -> outcomeCounts.put(outcome, count.sum()));
+        var measuredNanos = sendEndNanos - startNanos - warmupNanos;
+        return new Result(total, intervals, outcomeCounts, Duration.ofNanos(measuredNanos));
+    }
+
+    private void send(long intendedStartNanos, boolean measured) {
+        if (inFlight.get() >= settings.getMaxInFlight()) {
+            if (measured)
+                count("dropped");
+            return;
+        }
+
+        inFlight.incrementAndGet();
+        var movieId = ThreadLocalRandom.current().nextInt(1, settings.getMovieCount() + 1);
+        httpClient.get()
+                .uri("/v1/movies/" + movieId)
+                .responseSingle((response, body) -> body.asByteArray()
+                        .then(Mono.just(String.valueOf(response.status().code()))))
+                .onErrorResume(ex -> Mono.just(ex.getClass().getSimpleName()))
+                .subscribe(outcome -> {
+                    inFlight.decrementAndGet();
+                    if (measured) {
+                        recorder.recordValue(Math.min(
+                                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartNanos), HIGHEST_TRACKABLE_LATENCY));
+                        count(outcome);
+                    }
+                });
+    }
+
+    private void count(String outcome) {
+        outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+    }
+
+    public static class Result {
+
+        private final Histogram histogram;
+        private final List<Histogram> intervals;
+        private final Map<String, Long> outcomes;
+        private final Duration measuredDuration;
+
+        Result(Histogram histogram, List<Histogram> intervals, Map<String, Long> outcomes, Duration measuredDuration) {
+            this.histogram = histogram;
+            this.intervals = intervals;
+            this.outcomes = outcomes;
+            this.measuredDuration = measuredDuration;
+        }
+
+        public Histogram getHistogram() {
+            return histogram;
+        }
+
+        //one histogram per second of the measured part of the run
+        public List<Histogram> getIntervals() {
+            return intervals;
+        }
+
+        //response status code, exception name or "dropped" to number of requests
+        public Map<String, Long> getOutcomes() {
+            return outcomes;
+        }
+
+        public Duration getMeasuredDuration() {
+            return measuredDuration;
+        }
+    }
+}
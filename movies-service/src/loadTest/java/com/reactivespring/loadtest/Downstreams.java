@@ -0,0 +1,12 @@
+package com.reactivespring.loadtest;
+
+//The services movies-service calls during a load test, either WireMock stubs or the real services
+public interface Downstreams extends AutoCloseable {
+
+    String getMoviesInfoURL();
+
+    String getReviewsURL();
+
+    @Override
+    void close();
+}
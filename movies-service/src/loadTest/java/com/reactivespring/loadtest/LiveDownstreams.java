@@ -0,0 +1,144 @@
+package com.reactivespring.loadtest;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//movies-info-service and movies-review-service started from their boot jars, each in its own JVM so their
+//com.reactivespring classes don't clash with movies-service, against an embedded MongoDB seeded with the movies
+@Slf4j
+public class LiveDownstreams implements Downstreams {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private final MongodExecutable mongodExecutable;
+    private final List<Process> serviceProcesses = new ArrayList<>();
+    private int moviesInfoPort;
+    private int reviewsPort;
+
+    private LiveDownstreams(MongodExecutable mongodExecutable) {
+        this.mongodExecutable = mongodExecutable;
+    }
+
+    public static LiveDownstreams start(LoadTestSettings settings) throws IOException {
+        var mongoPort = Network.getFreeServerPort();
+        var mongodExecutable = MongodStarter.getDefaultInstance().prepare(MongodConfig.builder()
+                .version(Version.Main.PRODUCTION)
+                .net(new Net(mongoPort, Network.localhostIsIPv6()))
+                .build());
+        mongodExecutable.start();
+
+        var downstreams = new LiveDownstreams(mongodExecutable);
+        try {
+            downstreams.moviesInfoPort = Network.getFreeServerPort();
+            downstreams.reviewsPort = Network.getFreeServerPort();
+            downstreams.startService("movies-info-service", settings.getMoviesInfoJar(), downstreams.moviesInfoPort,
+                    mongoPort, settings.getOutputDir());
+            downstreams.startService("movies-review-service", settings.getReviewsJar(), downstreams.reviewsPort,
+                    mongoPort, settings.getOutputDir());
+
+            var webClient = WebClient.create();
+            awaitHealthy(webClient, downstreams.moviesInfoPort);
+            awaitHealthy(webClient, downstreams.reviewsPort);
+            downstreams.seed(webClient, settings);
+        } catch (RuntimeException | IOException ex) {
+            downstreams.close();
+            throw ex;
+        }
+        return downstreams;
+    }
+
+    private void startService(String name, Path jar, int port, int mongoPort, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        var java = ProcessHandle.current().info().command().orElse("java");
+
+        var process = new ProcessBuilder(java, "-jar", jar.toString(),
+                "--server.port=" + port,
+                "--spring.data.mongodb.host=localhost",
+                "--spring.data.mongodb.port=" + mongoPort,
+                "--spring.data.mongodb.database=loadtest",
+                "--logging.level.root=warn",
+                "--tracing.file.enabled=false")
+                .redirectErrorStream(true)
+                .redirectOutput(outputDir.resolve(name + ".log").toFile())
+                .start();
+        serviceProcesses.add(process);
+        log.info("Started {} on port {}, pid {}", name, port, process.pid());
+    }
+
+    private static void awaitHealthy(WebClient webClient, int port) {
+        webClient.get()
+                .uri("http://localhost:{port}/actuator/health", port)
+                .retrieve()
+                .toBodilessEntity()
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, Duration.ofMillis(500)))
+                .block(STARTUP_TIMEOUT);
+    }
+
+    //movie IDs 1..movieCount, the same IDs the load generator asks for
+    private void seed(WebClient webClient, LoadTestSettings settings) {
+        var movieInfos = Flux.range(1, settings.getMovieCount())
+                .map(movieId -> Map.<String, Object>of(
+                        "movieInfoId", String.valueOf(movieId),
+                        "name", "Movie " + movieId,
+                        "year", 2000 + movieId % 20,
+                        "cast", List.of("Christian Bale", "Michael Cane"),
+                        "release_date", LocalDate.of(2000 + movieId % 20, 6, 15).toString()))
+                .flatMap(movieInfo -> post(webClient, "http://localhost:" + moviesInfoPort + "/v1/addmovie", movieInfo), 16);
+
+        var reviews = Flux.range(1, settings.getMovieCount())
+                .concatMap(movieId -> Flux.range(1, settings.getReviewsPerMovie())
+                        .map(reviewNumber -> Map.<String, Object>of(
+                                "movieInfoId", String.valueOf(movieId),
+                                "comment", "Review " + reviewNumber + " of movie " + movieId,
+                                "rating", 1.0 + reviewNumber % 10)))
+                .flatMap(review -> post(webClient, "http://localhost:" + reviewsPort + "/v1/reviews", review), 16);
+
+        Mono.when(movieInfos, reviews).block();
+        log.info("Seeded {} movies with {} reviews each", settings.getMovieCount(), settings.getReviewsPerMovie());
+    }
+
+    private static Mono<Void> post(WebClient webClient, String url, Map<String, Object> body) {
+        return webClient.post()
+                .uri(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .toBodilessEntity()
+                .then();
+    }
+
+    @Override
+    public String getMoviesInfoURL() {
+        return "http://localhost:" + moviesInfoPort + "/v1";
+    }
+
+    @Override
+    public String getReviewsURL() {
+        return "http://localhost:" + reviewsPort + "/v1/reviews";
+    }
+
+    @Override
+    public void close() {
+        serviceProcesses.forEach(Process::destroy);
+        mongodExecutable.stop();
+    }
+}
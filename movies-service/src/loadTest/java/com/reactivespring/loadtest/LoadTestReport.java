@@ -0,0 +1,89 @@
+package com.reactivespring.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Writes the results of a run to the output directory:
+//- <label>.hgrm: percentile distribution in ms, can be plotted with the HdrHistogram plotter
+//- <label>.hlog: one histogram per second, for HistogramLogProcessor or to see the latency change during the run
+//- summary.jsonl: one line per run with the settings and the headline numbers, to compare runs with each other
+@Slf4j
+public class LoadTestReport {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final Path outputDir;
+    private final String label;
+
+    public LoadTestReport(Path outputDir, String label) {
+        this.outputDir = outputDir;
+        this.label = label;
+    }
+
+    public void write(LoadTestSettings settings, ConstantArrivalRateLoad.Result result) throws IOException {
+        Files.createDirectories(outputDir);
+        var histogram = result.getHistogram();
+
+        try (var out = new PrintStream(Files.newOutputStream(outputDir.resolve(label + ".hgrm")))) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+
+        try (var out = new PrintStream(Files.newOutputStream(outputDir.resolve(label + ".hlog")))) {
+            var logWriter = new HistogramLogWriter(out);
+            logWriter.outputLogFormatVersion();
+            logWriter.outputComment("latencies in microseconds, Interval_Max in ms");
+            logWriter.outputLegend();
+            result.getIntervals().forEach(interval -> logWriter.outputIntervalHistogram(
+                    interval.getStartTimeStamp() / 1000.0, interval.getEndTimeStamp() / 1000.0, interval, MICROS_PER_MILLI));
+        }
+
+        var summary = new LinkedHashMap<String, Object>();
+        summary.put("label", label);
+        summary.put("timestamp", Instant.now().toString());
+        summary.put("mode", settings.getMode());
+        summary.put("targetRate", settings.getRate());
+        summary.put("achievedRate", Math.round(histogram.getTotalCount() / (result.getMeasuredDuration().toMillis() / 1000.0)));
+        summary.put("duration", settings.getDuration().toString());
+        summary.put("requests", histogram.getTotalCount());
+        summary.put("outcomes", result.getOutcomes());
+        summary.put("latencyMs", Map.of(
+                "p50", percentileMillis(result, 50),
+                "p90", percentileMillis(result, 90),
+                "p99", percentileMillis(result, 99),
+                "p99.9", percentileMillis(result, 99.9),
+                "max", histogram.getMaxValue() / MICROS_PER_MILLI));
+        summary.put("appProperties", settings.getAppProperties());
+        if (!settings.isLive()) {
+            summary.put("stubs", Map.of(
+                    "moviesInfo", stubSummary(settings.getMoviesInfoLatencyMedian().toMillis(),
+                            settings.getMoviesInfoLatencySigma(), settings.getMoviesInfoErrorRate()),
+                    "reviews", stubSummary(settings.getReviewsLatencyMedian().toMillis(),
+                            settings.getReviewsLatencySigma(), settings.getReviewsErrorRate())));
+        }
+
+        var summaryLine = new ObjectMapper().writeValueAsString(summary);
+        Files.writeString(outputDir.resolve("summary.jsonl"), summaryLine + System.lineSeparator(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        log.info("{}", summaryLine);
+        log.info("Reports written to {}", outputDir.toAbsolutePath());
+    }
+
+    private static double percentileMillis(ConstantArrivalRateLoad.Result result, double percentile) {
+        return result.getHistogram().getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+    }
+
+    private static Map<String, Object> stubSummary(long latencyMedianMs, double latencySigma, double errorRate) {
+        return Map.of("latencyMedianMs", latencyMedianMs, "latencySigma", latencySigma, "errorRate", errorRate);
+    }
+}
@@ -0,0 +1,42 @@
+package com.reactivespring.loadtest;
+
+import com.reactivespring.MoviesServiceApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.LinkedHashMap;
+
+//Starts movies-service against stubbed or live downstreams in this JVM and drives /v1/movies/{id} with
+//ConstantArrivalRateLoad. Run with ./gradlew :movies-service:loadTest, see LoadTestSettings for the options.
+@Slf4j
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        var settings = LoadTestSettings.fromSystemProperties();
+        var label = settings.getLabel();
+
+        try (var downstreams = settings.isLive() ? LiveDownstreams.start(settings) : StubbedDownstreams.start(settings);
+             var moviesService = startMoviesService(settings, downstreams)) {
+
+            var port = ((WebServerApplicationContext) moviesService).getWebServer().getPort();
+            var result = new ConstantArrivalRateLoad(settings, "http://localhost:" + port).run();
+            new LoadTestReport(settings.getOutputDir(), label).write(settings, result);
+        }
+    }
+
+    private static ConfigurableApplicationContext startMoviesService(LoadTestSettings settings, Downstreams downstreams) {
+        var properties = new LinkedHashMap<String, String>();
+        properties.put("restClient.moviesInfoURL", downstreams.getMoviesInfoURL());
+        properties.put("restClient.reviewsURL", downstreams.getReviewsURL());
+        properties.putAll(settings.getAppProperties());
+        log.info("Starting movies-service with {}", properties);
+
+        //passed as command line arguments, default properties would be overridden by application.yml
+        return new SpringApplicationBuilder(MoviesServiceApplication.class)
+                .run(properties.entrySet().stream()
+                        .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                        .toArray(String[]::new));
+    }
+}
@@ -0,0 +1,144 @@
+package com.reactivespring.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+//All the settings come from -Dloadtest.* system properties, e.g.
+//./gradlew :movies-service:loadTest -Dloadtest.rate=500 -Dloadtest.app.restClient.moviesInfoCache.enabled=false
+public class LoadTestSettings {
+
+    private static final String PREFIX = "loadtest.";
+    private static final String APP_PREFIX = PREFIX + "app.";
+
+    private final Properties properties;
+
+    private LoadTestSettings(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(System.getProperties());
+    }
+
+    //stubbed: WireMock downstreams, live: movies-info-service and movies-review-service against an embedded MongoDB
+    public boolean isLive() {
+        return "live".equals(get("mode", "stubbed"));
+    }
+
+    public String getMode() {
+        return isLive() ? "live" : "stubbed";
+    }
+
+    //requests per second, requests are sent on schedule irrespective of how many responses are still outstanding
+    public int getRate() {
+        return Integer.parseInt(get("rate", "200"));
+    }
+
+    public Duration getWarmup() {
+        return DurationStyle.detectAndParse(get("warmup", "10s"));
+    }
+
+    public Duration getDuration() {
+        return DurationStyle.detectAndParse(get("duration", "60s"));
+    }
+
+    //requests that would go over this many outstanding requests are counted as dropped instead of being sent
+    public int getMaxInFlight() {
+        return Integer.parseInt(get("maxInFlight", "2000"));
+    }
+
+    public Duration getRequestTimeout() {
+        return DurationStyle.detectAndParse(get("requestTimeout", "10s"));
+    }
+
+    //the movie IDs are picked at random from 1..movieCount, so this is also the working set of the movie info cache
+    public int getMovieCount() {
+        return Integer.parseInt(get("movieCount", "100"));
+    }
+
+    public int getReviewsPerMovie() {
+        return Integer.parseInt(get("reviewsPerMovie", "10"));
+    }
+
+    //stubbed mode, the latencies are log-normally distributed around the median
+    public Duration getMoviesInfoLatencyMedian() {
+        return DurationStyle.detectAndParse(get("moviesInfo.latencyMedian", "20ms"));
+    }
+
+    public double getMoviesInfoLatencySigma() {
+        return Double.parseDouble(get("moviesInfo.latencySigma", "0.3"));
+    }
+
+    //fraction of the calls answered with a 500
+    public double getMoviesInfoErrorRate() {
+        return Double.parseDouble(get("moviesInfo.errorRate", "0"));
+    }
+
+    public Duration getReviewsLatencyMedian() {
+        return DurationStyle.detectAndParse(get("reviews.latencyMedian", "30ms"));
+    }
+
+    public double getReviewsLatencySigma() {
+        return Double.parseDouble(get("reviews.latencySigma", "0.5"));
+    }
+
+    public double getReviewsErrorRate() {
+        return Double.parseDouble(get("reviews.errorRate", "0"));
+    }
+
+    //live mode, the boot jars are set by the loadTest Gradle task
+    public Path getMoviesInfoJar() {
+        return Path.of(getRequired("moviesInfoJar"));
+    }
+
+    public Path getReviewsJar() {
+        return Path.of(getRequired("reviewsJar"));
+    }
+
+    public Path getOutputDir() {
+        return Path.of(get("outputDir", "build/loadtest"));
+    }
+
+    //file name of the reports of this run
+    public String getLabel() {
+        return get("label", getMode() + "-" + getRate() + "rps-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+    }
+
+    //-Dloadtest.app.<property>=<value> is passed to movies-service as <property>=<value>, e.g. to compare pool,
+    //retry and cache settings between runs. Tracing to file and info logging are off unless they are overridden.
+    public Map<String, String> getAppProperties() {
+        var appProperties = new LinkedHashMap<String, String>();
+        appProperties.put("server.port", "0");
+        appProperties.put("tracing.file.enabled", "false");
+        appProperties.put("logging.level.root", "warn");
+        appProperties.put("logging.level.com.reactivespring.loadtest", "info");
+        //the movies don't change during a run, and neither the stubs nor the standalone mongod stream changes
+        appProperties.put("restClient.moviesInfoCache.invalidation.enabled", "false");
+
+        properties.stringPropertyNames().stream()
+                .filter(name -> name.startsWith(APP_PREFIX))
+                .sorted()
+                .forEach(name -> appProperties.put(name.substring(APP_PREFIX.length()), properties.getProperty(name)));
+        return appProperties;
+    }
+
+    private String get(String name, String defaultValue) {
+        return properties.getProperty(PREFIX + name, defaultValue);
+    }
+
+    private String getRequired(String name) {
+        var value = properties.getProperty(PREFIX + name);
+        if (value == null)
+            throw new IllegalStateException("-D" + PREFIX + name + " is required in " + getMode() + " mode");
+
+        return value;
+    }
+}
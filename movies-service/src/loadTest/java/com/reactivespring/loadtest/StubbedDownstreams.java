@@ -0,0 +1,122 @@
+package com.reactivespring.loadtest;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformer;
+import com.github.tomakehurst.wiremock.http.Request;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+//WireMock in place of movies-info-service and movies-review-service, with log-normal latencies and a random
+//fraction of 500s for each of them
+@Slf4j
+public class StubbedDownstreams implements Downstreams {
+
+    private final WireMockServer wireMockServer;
+
+    private StubbedDownstreams(WireMockServer wireMockServer) {
+        this.wireMockServer = wireMockServer;
+    }
+
+    public static StubbedDownstreams start(LoadTestSettings settings) {
+        var wireMockServer = new WireMockServer(options()
+                .dynamicPort()
+                .containerThreads(400)
+                //delays are served without holding a Jetty thread, otherwise the threads limit the throughput
+                .asynchronousResponseEnabled(true)
+                .asynchronousResponseThreads(50)
+                //the journal keeps every request in memory for verify(), not needed here
+                .disableRequestJournal()
+                .extensions(new RandomServerError()));
+        wireMockServer.start();
+
+        wireMockServer.stubFor(get(urlPathMatching("/v1/findmovie/.+"))
+                .willReturn(stubbedResponse(movieInfoJson(), settings.getMoviesInfoLatencyMedian(),
+                        settings.getMoviesInfoLatencySigma(), settings.getMoviesInfoErrorRate())));
+
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(stubbedResponse(reviewsJson(settings.getReviewsPerMovie()), settings.getReviewsLatencyMedian(),
+                        settings.getReviewsLatencySigma(), settings.getReviewsErrorRate())));
+
+        log.info("WireMock downstreams listening on port {}", wireMockServer.port());
+        return new StubbedDownstreams(wireMockServer);
+    }
+
+    private static ResponseDefinitionBuilder stubbedResponse(String body, Duration latencyMedian, double latencySigma, double errorRate) {
+        return aResponse()
+                .withHeader("Content-Type", "application/json")
+                .withBody(body)
+                .withLogNormalRandomDelay(latencyMedian.toMillis(), latencySigma)
+                .withTransformers(RandomServerError.NAME)
+                .withTransformerParameter(RandomServerError.ERROR_RATE, errorRate);
+    }
+
+    private static String movieInfoJson() {
+        return "{\"movieInfoId\": \"1\", \"name\": \"Batman Begins\", \"year\": 2005, " +
+                "\"cast\": [\"Christian Bale\", \"Michael Cane\"], \"release_date\": \"2005-06-15\"}";
+    }
+
+    private static String reviewsJson(int reviewCount) {
+        return IntStream.rangeClosed(1, reviewCount)
+                .mapToObj(reviewId -> "{\"reviewId\": \"" + reviewId + "\", \"movieInfoId\": 1, " +
+                        "\"comment\": \"Awesome Movie\", \"rating\": 9.0}")
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    @Override
+    public String getMoviesInfoURL() {
+        return wireMockServer.baseUrl() + "/v1";
+    }
+
+    @Override
+    public String getReviewsURL() {
+        return wireMockServer.baseUrl() + "/v1/reviews";
+    }
+
+    @Override
+    public void close() {
+        wireMockServer.stop();
+    }
+
+    //Turns the stubbed response into a 500 for the given fraction of the calls, the delay stays the same
+    static class RandomServerError extends ResponseDefinitionTransformer {
+
+        static final String NAME = "random-server-error";
+        static final String ERROR_RATE = "errorRate";
+
+        @Override
+        public ResponseDefinition transform(Request request, ResponseDefinition responseDefinition, FileSource files, Parameters parameters) {
+            var errorRate = ((Number) parameters.getOrDefault(ERROR_RATE, 0)).doubleValue();
+            if (ThreadLocalRandom.current().nextDouble() >= errorRate)
+                return responseDefinition;
+
+            return ResponseDefinitionBuilder.like(responseDefinition).but()
+                    .withStatus(500)
+                    .withBody("Stubbed server error")
+                    .build();
+        }
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public boolean applyGlobally() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.reactivespring.client;
+
+import com.reactivespring.config.MovieInfoCacheProperties;
+import com.reactivespring.domain.MovieInfoChange;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//Keeps the movie info cache of MoviesInfoRestClient up to date with the changes streamed by movies-info-service.
+//The ID of the last change received is sent as Last-Event-ID on reconnect, so the changes made while the stream
+//was down are received as well.
+@Component
+@ConditionalOnExpression("${restClient.moviesInfoCache.enabled:true} and ${restClient.moviesInfoCache.invalidation.enabled:true}")
+@Slf4j
+public class MovieInfoChangeListener {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<MovieInfoChange>> CHANGE_EVENT =
+            new ParameterizedTypeReference<>() {};
+
+    private WebClient webClient;
+    private MoviesInfoRestClient moviesInfoRestClient;
+    private MovieInfoCacheProperties.Invalidation invalidation;
+    private Duration expireAfterWrite;
+
+    @Value("${restClient.moviesInfoURL}")
+    private String moviesInfoURL;
+
+    //only used by the subscription to the stream, one event at a time
+    private volatile String lastEventId;
+
+    private Disposable subscription;
+
+    public MovieInfoChangeListener(@Qualifier("moviesInfoChangesWebClient") WebClient webClient,
+                                   MoviesInfoRestClient moviesInfoRestClient, MovieInfoCacheProperties cacheProperties){
+        this.webClient = webClient;
+        this.moviesInfoRestClient = moviesInfoRestClient;
+        this.invalidation = cacheProperties.getInvalidation();
+        this.expireAfterWrite = cacheProperties.getExpireAfterWrite();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start(){
+        subscription = Flux.defer(this::streamChanges)
+                //the stream ended, e.g. movies-info-service restarted
+                .repeatWhen(completed -> completed.delayElements(invalidation.getMinBackoff()))
+                //transientErrors: the backoff starts over once events are received again. Only the first failure
+                //in a row is a warning, e.g. while movies-info-service is down there's a reconnect every maxBackoff
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, invalidation.getMinBackoff())
+                        .maxBackoff(invalidation.getMaxBackoff())
+                        .transientErrors(true)
+                        .filter(ex -> !isUnsupported(ex))
+                        .doBeforeRetry(this::logRetry))
+                //MongoDB isn't a replica set, reconnecting won't help. The cached movie infos expire after
+                //expireAfterWrite instead, as if invalidation was disabled.
+                .onErrorResume(MovieInfoChangeListener::isUnsupported, ex -> {
+                    log.warn("movies-info-service can't stream movie info changes, cached movie infos expire after {} instead",
+                            expireAfterWrite);
+                    moviesInfoRestClient.setChangesStreamed(false);
+                    return Flux.empty();
+                })
+                .subscribe(this::onEvent);
+    }
+
+    @PreDestroy
+    public void stop(){
+        if (subscription != null)
+            subscription.dispose();
+    }
+
+    private Flux<ServerSentEvent<MovieInfoChange>> streamChanges(){
+        var resumeAfter = lastEventId;
+        var connected = new AtomicBoolean();
+
+        return webClient.get()
+                .uri(moviesInfoURL.concat("/moviechanges"))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .headers(headers -> {
+                    if (resumeAfter != null)
+                        headers.set("Last-Event-ID", resumeAfter);
+                })
+                .retrieve()
+                .bodyToFlux(CHANGE_EVENT)
+                .timeout(invalidation.getHeartbeatTimeout())
+                .doOnNext(event -> {
+                    if (!connected.compareAndSet(false, true))
+                        return;
+
+                    //connected without a position in the stream (the first heartbeat comes straight away), so we can't
+                    //tell what changed before, anything cached may be stale
+                    if (resumeAfter == null)
+                        moviesInfoRestClient.invalidateCache();
+                    moviesInfoRestClient.setChangesStreamed(true);
+                })
+                .doFinally(signalType -> {
+                    if (connected.get())
+                        moviesInfoRestClient.setChangesStreamed(false);
+                });
+    }
+
+    private void logRetry(Retry.RetrySignal retrySignal){
+        if (retrySignal.totalRetriesInARow() == 0)
+            log.warn("Movie info change stream failed, reconnecting: {}", retrySignal.failure().toString());
+        else
+            log.debug("Movie info change stream reconnect {} failed: {}", retrySignal.totalRetriesInARow(),
+                    retrySignal.failure().toString());
+    }
+
+    private static boolean isUnsupported(Throwable ex){
+        return ex instanceof WebClientResponseException
+                && ((WebClientResponseException) ex).getStatusCode() == HttpStatus.NOT_IMPLEMENTED;
+    }
+
+    private void onEvent(ServerSentEvent<MovieInfoChange> event){
+        var change = event.data();
+        if (change == null)//heartbeat
+            return;
+
+        if (MovieInfoChange.RESET.equals(change.getOperation())) {
+            log.warn("Movie info changes may have been missed, clearing the movie info cache");
+            moviesInfoRestClient.invalidateCache();
+        } else {
+            log.debug("Movie info {}: {}", change.getOperation(), change.getMovieInfoId());
+            moviesInfoRestClient.applyChange(change);
+        }
+
+        lastEventId = event.id();//null after a reset, the changes from now on follow
+    }
+}
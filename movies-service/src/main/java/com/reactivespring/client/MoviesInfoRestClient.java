@@ -1,43 +1,221 @@
 package com.reactivespring.client;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.reactivespring.config.MovieInfoCacheProperties;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import com.reactivespring.domain.ProjectedMovieInfo;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.util.RequestDeadline;
 import com.reactivespring.util.RetryUtil;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.retry.Retry;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 @Slf4j
 public class MoviesInfoRestClient {
 
     private WebClient webClient;
+    private RetryUtil retryUtil;
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
 
     @Value("${restClient.moviesInfoURL}")
     private String moviesInfoURL;
 
-    public MoviesInfoRestClient(WebClient webClient){
+    //bounds the cache loads and refreshes, which don't run under the deadline of any one request
+    @Value("${restClient.retry.defaultRequestTimeout:10s}")
+    private Duration loadTimeout = Duration.ofSeconds(10);
+
+    //null when the cache is disabled
+    private AsyncCache<String, CachedMovieInfo> movieInfoCache;
+    private MovieInfoCacheProperties cacheProperties;
+
+    //true while MovieInfoChangeListener is connected to the change stream, the longer expiry of
+    //moviesInfoCache.invalidation applies then
+    private volatile boolean changesStreamed;
+
+    public MoviesInfoRestClient(@Qualifier("moviesInfoWebClient") WebClient webClient, RetryUtil retryUtil,
+                                CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                                MovieInfoCacheProperties cacheProperties, MeterRegistry meterRegistry){
         this.webClient = webClient;
+        this.retryUtil = retryUtil;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("moviesInfo");
+        this.bulkhead = bulkheadRegistry.bulkhead("moviesInfo");
+
+        this.cacheProperties = cacheProperties;
+        if (cacheProperties.isEnabled()) {
+            //the cache keeps a single in-flight load per movie ID, so concurrent misses for
+            //the same ID share one HTTP call instead of each making their own
+            this.movieInfoCache = Caffeine.newBuilder()
+                    .maximumSize(cacheProperties.getMaximumSize())
+                    .expireAfter(new CachedMovieInfoExpiry())
+                    .recordStats()
+                    .buildAsync();
+
+            //publishes cache.gets (hit/miss), cache.evictions, cache.load.duration etc. tagged with cache=movieInfo
+            CaffeineCacheMetrics.monitor(meterRegistry, movieInfoCache.synchronous(), "movieInfo");
+        }
     }
 
-    public Mono<MovieInfo> retrieveMovieInfo(String movieId){
-        var URL = moviesInfoURL.concat("/findmovie/{id}");
+    //fields (e.g. "name,year") only fetches those fields of the movie info, null for all of them. The cache only
+    //holds whole movie infos, so a movie info with fields is always fetched from movies-info-service.
+    public Mono<MovieInfo> retrieveMovieInfo(String movieId, String fields){
+        if (movieInfoCache == null || fields != null)
+            return fetchMovieInfo(movieId, null, fields).map(ResponseEntity::getBody);
+
+        //Concurrent reads of the same movie share the load of the first one, so the load runs under a deadline of
+        //its own and each read waits for it until its own deadline. A read gets a copy of the shared future, its
+        //cancellation doesn't cancel the load for the other reads.
+        return Mono.deferContextual(context -> {
+                    var load = movieInfoCache.get(movieId, (id, executor) -> loadMovieInfo(id, null)
+                            .contextWrite(loadContext(context))
+                            .toFuture());
+                    return untilDeadline(Mono.fromFuture(load.copy()), load.isDone(), context)
+                            .doOnNext(cachedMovieInfo -> refreshIfDue(movieId, cachedMovieInfo, context));
+                })
+                .flatMap(CachedMovieInfo::toMono);
+    }
+
+    //the trace of the read that starts the load or refresh, but not its RequestDeadline
+    private Context loadContext(ContextView context){
+        return Context.of(context).put(RequestDeadline.CONTEXT_KEY, Instant.now().plus(loadTimeout));
+    }
+
+    private Mono<CachedMovieInfo> untilDeadline(Mono<CachedMovieInfo> load, boolean loaded, ContextView context){
+        var deadline = RequestDeadline.from(context);
+        if (loaded || deadline.isEmpty())
+            return load;
+
+        var remaining = Duration.between(Instant.now(), deadline.get());
+        return load.timeout(remaining.isNegative() ? Duration.ZERO : remaining,
+                Mono.error(() -> new MoviesInfoServerException("Movie info not received within the request deadline")));
+    }
+
+    //refreshAfterWrite is done here rather than by Caffeine, whose reload wouldn't have the context of the read.
+    //The read doesn't wait for the refresh, so the refresh isn't bound by its RequestDeadline but by loadTimeout.
+    private void refreshIfDue(String movieId, CachedMovieInfo cachedMovieInfo, ContextView context){
+        var refreshAfterWrite = changesStreamed ? cacheProperties.getInvalidation().getRefreshAfterWrite()
+                : cacheProperties.getRefreshAfterWrite();
+        if (!cachedMovieInfo.startRefresh(refreshAfterWrite.toNanos()))
+            return;
+
+        loadMovieInfo(movieId, cachedMovieInfo)
+                .contextWrite(loadContext(context))
+                .subscribe(refreshed -> replaceRefreshed(movieId, cachedMovieInfo, refreshed),
+                        ex -> {
+                            log.warn("Movie info {} not refreshed: {}", movieId, ex.toString());
+                            cachedMovieInfo.refreshFailed();//the next read tries again
+                        });
+    }
+
+    //Only replaces the movie info the refresh started from, a change applied while the refresh was in flight is
+    //newer than what the refresh got and is kept
+    private void replaceRefreshed(String movieId, CachedMovieInfo refreshedFrom, CachedMovieInfo refreshed){
+        var current = movieInfoCache.asMap().get(movieId);
+        if (current != null && current.isDone() && !current.isCompletedExceptionally() && current.join() == refreshedFrom)
+            movieInfoCache.asMap().replace(movieId, current, CompletableFuture.completedFuture(refreshed));
+    }
+
+    //Applies a change streamed by movies-info-service. Only the movies in the cache are updated, so the changes
+    //to movies nobody asks for don't fill it up. A delete or a change without the movie drops it from the cache.
+    //A load in flight for the movie is replaced (or dropped) as well, Caffeine doesn't store its result then.
+    public void applyChange(MovieInfoChange change){
+        if (movieInfoCache == null || change.getMovieInfoId() == null)
+            return;
+
+        var movieId = change.getMovieInfoId();
+        if (change.getMovieInfo() != null && movieInfoCache.getIfPresent(movieId) != null)
+            movieInfoCache.put(movieId, CompletableFuture.completedFuture(CachedMovieInfo.found(change.getMovieInfo(), null)));
+        else
+            movieInfoCache.synchronous().invalidate(movieId);
+    }
+
+    //Once the stream is down, the movie infos cached while it was connected expire as if they had been cached
+    //with the shorter expiry, changes to them aren't received anymore
+    public void setChangesStreamed(boolean changesStreamed){
+        this.changesStreamed = changesStreamed;
+        if (changesStreamed || movieInfoCache == null)
+            return;
+
+        var expireAfterWriteNanos = cacheProperties.getExpireAfterWrite().toNanos();
+        var cache = movieInfoCache.synchronous();
+        cache.policy().expireVariably().ifPresent(expiration -> cache.asMap().forEach((movieId, cachedMovieInfo) -> {
+            var remainingNanos = expireAfterWriteNanos - cachedMovieInfo.ageNanos();
+            if (remainingNanos <= 0)
+                cache.invalidate(movieId);
+            else if (remainingNanos < expiration.getExpiresAfter(movieId, TimeUnit.NANOSECONDS).orElse(Long.MAX_VALUE))
+                expiration.setExpiresAfter(movieId, remainingNanos, TimeUnit.NANOSECONDS);
+        }));
+    }
+
+    //When changes may have been missed, e.g. movies-info-service couldn't resume the stream
+    public void invalidateCache(){
+        if (movieInfoCache != null)
+            movieInfoCache.synchronous().invalidateAll();
+    }
 
-        /*var retrySpec = Retry.fixedDelay(3, Duration.ofSeconds(1))
-                .filter(ex -> ex instanceof MoviesInfoServerException)//No retries for client exceptions
-                .onRetryExhaustedThrow(((retryBackoffSpec, retrySignal) ->
-                        Exceptions.propagate(retrySignal.failure())));*/
+    //404s are cached as well, other errors aren't cached so the next request tries again. On a refresh the ETag of
+    //the cached movie info is sent along (If-None-Match) and a 304 keeps it, so an unchanged movie costs a round trip
+    //of headers instead of the whole movie info.
+    private Mono<CachedMovieInfo> loadMovieInfo(String movieId, CachedMovieInfo cachedMovieInfo){
+        var eTag = cachedMovieInfo != null ? cachedMovieInfo.eTag : null;
+
+        return fetchMovieInfo(movieId, eTag, null)
+                .timeout(loadTimeout, Mono.error(() -> new MoviesInfoServerException(
+                        "Movie info not received within " + loadTimeout.toMillis() + " ms")))
+                .map(response -> {
+                    if (response.getStatusCode() == HttpStatus.NOT_MODIFIED)
+                        return CachedMovieInfo.found(cachedMovieInfo.movieInfo, cachedMovieInfo.eTag);
+
+                    return CachedMovieInfo.found(response.getBody(), response.getHeaders().getETag());
+                })
+                .onErrorResume(MoviesInfoClientException.class, ex -> {
+                    if (ex.getStatusCode() == HttpStatus.NOT_FOUND.value())
+                        return Mono.just(CachedMovieInfo.notFound(ex));
+
+                    return Mono.error(ex);
+                });
+    }
+
+    //a 304 (without a body) if ifNoneMatch is the ETag of the movie info
+    private Mono<ResponseEntity<MovieInfo>> fetchMovieInfo(String movieId, String ifNoneMatch, String fields){
+        var URL = moviesInfoURL.concat("/findmovie/{id}");
 
         return webClient.get()
-                .uri(URL, movieId)
+                .uri(URL, uriBuilder -> uriBuilder.queryParamIfPresent("fields", Optional.ofNullable(fields)).build(movieId))
+                .headers(headers -> {
+                    if (ifNoneMatch != null)
+                        headers.setIfNoneMatch(ifNoneMatch);
+                })
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
                     log.info("Status code is: {}", clientResponse.statusCode().value());
@@ -59,8 +237,116 @@ public class MoviesInfoRestClient {
                             .flatMap(responseMessage -> Mono.error(new MoviesInfoServerException(
                                     "Server exception in MoviesInfoService: " + responseMessage)));
                 })
-                .bodyToMono(MovieInfo.class)
-                //.retry(3);
-                .retryWhen(RetryUtil.retrySpec());
+                .toEntity(readAs(fields))
+                //bulkhead and circuit breaker apply to each attempt, retries are not made for the calls they reject
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retryUtil.retrySpec("moviesInfo"));
+    }
+
+    //a projected movie info is read as ProjectedMovieInfo, so the fields that weren't fetched aren't written as nulls
+    @SuppressWarnings("unchecked")
+    private static Class<MovieInfo> readAs(String fields){
+        return (Class<MovieInfo>) (fields != null ? ProjectedMovieInfo.class : MovieInfo.class);
+    }
+
+    //Fetches the movie info for all the IDs in a single call to movies-info-service
+    public Flux<MovieInfo> retrieveMovieInfos(List<String> movieIds, String fields){
+        var URL = moviesInfoURL.concat("/findmovies");
+
+        //the query is added with the uri builder, so http.client.requests is tagged with the path and not every list of IDs
+        return webClient.get()
+                .uri(URL, uriBuilder -> uriBuilder.queryParam("ids", String.join(",", movieIds))
+                        .queryParamIfPresent("fields", Optional.ofNullable(fields))
+                        .build())
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
+                    log.info("Status code is: {}", clientResponse.statusCode().value());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(responseMessage -> Mono.error(new MoviesInfoClientException(
+                                    responseMessage, clientResponse.statusCode().value()
+                            )));
+                })
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> {
+                    log.info("Status code is: {}", clientResponse.statusCode().value());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(responseMessage -> Mono.error(new MoviesInfoServerException(
+                                    "Server exception in MoviesInfoService: " + responseMessage)));
+                })
+                .bodyToFlux(readAs(fields))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retryUtil.retrySpec("moviesInfo"));
+    }
+
+    private static class CachedMovieInfo {
+        private final MovieInfo movieInfo;
+        private final String eTag;//null for 404s and the movie infos of the change stream
+        private final String notFoundMessage;
+        private final long loadedAt = System.nanoTime();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private CachedMovieInfo(MovieInfo movieInfo, String eTag, String notFoundMessage){
+            this.movieInfo = movieInfo;
+            this.eTag = eTag;
+            this.notFoundMessage = notFoundMessage;
+        }
+
+        long ageNanos(){
+            return System.nanoTime() - loadedAt;
+        }
+
+        //true for the one read that has to refresh it
+        boolean startRefresh(long refreshAfterWriteNanos){
+            return ageNanos() >= refreshAfterWriteNanos && refreshing.compareAndSet(false, true);
+        }
+
+        void refreshFailed(){
+            refreshing.set(false);
+        }
+
+        static CachedMovieInfo found(MovieInfo movieInfo, String eTag){
+            return new CachedMovieInfo(movieInfo, eTag, null);
+        }
+
+        static CachedMovieInfo notFound(MoviesInfoClientException ex){
+            return new CachedMovieInfo(null, null, ex.getMessage());
+        }
+
+        boolean isNotFound(){
+            return movieInfo == null;
+        }
+
+        Mono<MovieInfo> toMono(){
+            //a new exception per request, a cached exception instance would be shared by concurrent requests
+            if (isNotFound())
+                return Mono.error(new MoviesInfoClientException(notFoundMessage, HttpStatus.NOT_FOUND.value()));
+
+            return Mono.just(movieInfo);
+        }
+    }
+
+    //Found movie infos and 404s expire after different durations, found ones after a longer one while the changes
+    //are streamed
+    private class CachedMovieInfoExpiry implements Expiry<String, CachedMovieInfo> {
+
+        @Override
+        public long expireAfterCreate(String movieId, CachedMovieInfo cachedMovieInfo, long currentTime) {
+            if (cachedMovieInfo.isNotFound())
+                return cacheProperties.getNotFoundExpireAfterWrite().toNanos();
+
+            return changesStreamed ? cacheProperties.getInvalidation().getExpireAfterWrite().toNanos()
+                    : cacheProperties.getExpireAfterWrite().toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String movieId, CachedMovieInfo cachedMovieInfo, long currentTime, long currentDuration) {
+            return expireAfterCreate(movieId, cachedMovieInfo, currentTime);//a refresh restarts the expiry
+        }
+
+        @Override
+        public long expireAfterRead(String movieId, CachedMovieInfo cachedMovieInfo, long currentTime, long currentDuration) {
+            return currentDuration;//reads don't extend the expiry
+        }
     }
 }
@@ -1,40 +1,107 @@
 package com.reactivespring.client;
 
+import com.reactivespring.domain.ProjectedReview;
 import com.reactivespring.domain.Review;
-import com.reactivespring.exception.MoviesInfoClientException;
-import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.exception.ReviewsServerException;
 import com.reactivespring.util.RetryUtil;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
 @Component
 @Slf4j
 public class ReviewsRestClient {
 
     private WebClient webClient;
+    private RetryUtil retryUtil;
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
 
     @Value("${restClient.reviewsURL}")
     private String reviewsURL;
 
-    public ReviewsRestClient(WebClient webClient){
+    public ReviewsRestClient(@Qualifier("reviewsWebClient") WebClient webClient, RetryUtil retryUtil,
+                             CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry){
         this.webClient = webClient;
+        this.retryUtil = retryUtil;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("reviews");
+        this.bulkhead = bulkheadRegistry.bulkhead("reviews");
+    }
+
+    //fields (e.g. "comment,rating") only fetches those fields of the reviews, null for all of them
+    public Flux<Review> retrieveReviews(String movieId, String fields){
+        //the query is added with the uri builder, so http.client.requests is tagged with the path and not every movie ID
+        return retrieveReviews(uriBuilder -> uriBuilder.queryParam("movieInfoId", movieId)
+                .queryParamIfPresent("fields", Optional.ofNullable(fields))
+                .build(), fields);
     }
 
-    public Flux<Review> retrieveReviews(String movieId){
-        var URL = UriComponentsBuilder.fromHttpUrl(reviewsURL)
-                .queryParam("movieInfoId", movieId)
-                .buildAndExpand()
-                .toString();
+    //Fetches the reviews of all the movies in a single call, movies-review-service runs it as one $in query
+    public Flux<Review> retrieveReviews(List<String> movieIds, String fields){
+        return retrieveReviews(uriBuilder -> uriBuilder.queryParam("movieInfoIds", String.join(",", movieIds))
+                .queryParamIfPresent("fields", Optional.ofNullable(fields))
+                .build(), fields);
+    }
 
+    //The N best rated reviews of the movie, movies-review-service reads them in order from its movieInfoId_rating index
+    public Flux<Review> retrieveTopReviews(String movieId, int top, String fields){
+        return retrieveReviews(uriBuilder -> uriBuilder.queryParam("movieInfoId", movieId).queryParam("top", top)
+                .queryParamIfPresent("fields", Optional.ofNullable(fields))
+                .build(), fields);
+    }
+
+    //Count, average rating and rating histogram of all the reviews of the movie, without fetching the reviews
+    public Mono<ReviewStats> retrieveReviewStats(String movieId){
+        return retrieve(reviewsURL + "/stats", uriBuilder -> uriBuilder.queryParam("movieInfoId", movieId).build(),
+                        MediaType.APPLICATION_JSON)
+                .bodyToMono(ReviewStats.class)
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retryUtil.retrySpec("reviews"));
+    }
+
+    //projected reviews are read as ProjectedReview, so the fields that weren't fetched aren't written as nulls
+    @SuppressWarnings("unchecked")
+    private static Class<Review> readAs(String fields){
+        return (Class<Review>) (fields != null ? ProjectedReview.class : Review.class);
+    }
+
+    //The reviews are asked for as NDJSON and emitted as they are decoded. Only getting the response is retried
+    //(a 5xx, a timeout before the headers), a response failing partway isn't, as its first reviews were already
+    //emitted. Bulkhead and circuit breaker apply to each attempt, retries are not made for the calls they reject.
+    private Flux<Review> retrieveReviews(Function<UriBuilder, URI> uriFunction, String fields){
+        return retrieve(reviewsURL, uriFunction, MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_JSON)
+                .toEntityFlux(readAs(fields))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retryUtil.retrySpec("reviews"))
+                .flatMapMany(response -> response.getBody() != null ? response.getBody() : Flux.empty());
+    }
+
+    private WebClient.ResponseSpec retrieve(String url, Function<UriBuilder, URI> uriFunction, MediaType... acceptableMediaTypes){
         return webClient.get()
-                .uri(URL)
+                .uri(url, uriFunction)
+                .accept(acceptableMediaTypes)
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
                     log.info("Status code is: {}", clientResponse.statusCode().value());
@@ -48,10 +115,8 @@ public class ReviewsRestClient {
                 .onStatus(HttpStatus::is5xxServerError, clientResponse -> {
                     log.info("Status code is: {}", clientResponse.statusCode().value());
                     return clientResponse.bodyToMono(String.class)
-                            .flatMap(responseMessage -> Mono.error(new MoviesInfoServerException(
-                                    "Server exception in MoviesInfoService: " + responseMessage)));
-                })
-                .bodyToFlux(Review.class)
-                .retryWhen(RetryUtil.retrySpec());
+                            .flatMap(responseMessage -> Mono.error(new ReviewsServerException(
+                                    "Server exception in ReviewsService: " + responseMessage)));
+                });
     }
 }
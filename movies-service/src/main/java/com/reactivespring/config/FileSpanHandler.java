@@ -0,0 +1,77 @@
+package com.reactivespring.config;
+
+import brave.Tags;
+import brave.handler.MutableSpan;
+import brave.handler.MutableSpanBytesEncoder;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+//One Zipkin v2 JSON line per finished span, written off the event loop. At most queueCapacity spans wait for the
+//file, the ones after that are dropped and counted in tracing.file.spans.dropped rather than piling up in memory.
+@Slf4j
+public class FileSpanHandler extends SpanHandler {
+
+    private final MutableSpanBytesEncoder encoder = MutableSpanBytesEncoder.zipkinJsonV2(Tags.ERROR);
+    private final Counter dropped;
+    private final Writer file;
+    private final ThreadPoolExecutor writer;
+
+    public FileSpanHandler(Path path, int queueCapacity, MeterRegistry meterRegistry) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.dropped = Counter.builder("tracing.file.spans.dropped")
+                .description("Finished spans not written to the span file because its queue was full")
+                .register(meterRegistry);
+        this.file = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    var thread = new Thread(runnable, "file-span-handler");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> dropped.increment());
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause == Cause.FINISHED) {
+            var line = new String(encoder.encode(span), StandardCharsets.UTF_8);
+            writer.execute(() -> write(line));
+        }
+        return true;
+    }
+
+    //only flushed once the queue is drained, so a burst of spans goes out in a few writes
+    private void write(String line) {
+        try {
+            file.write(line);
+            file.write('\n');
+            if (writer.getQueue().isEmpty())
+                file.flush();
+        } catch (IOException ex) {
+            log.warn("Span couldn't be written: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        writer.shutdown();
+        if (!writer.awaitTermination(5, TimeUnit.SECONDS))
+            log.warn("Span file writer didn't finish within 5s, {} spans not written", writer.getQueue().size());
+        file.close();
+    }
+}
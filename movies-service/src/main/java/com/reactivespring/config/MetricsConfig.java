@@ -0,0 +1,33 @@
+package com.reactivespring.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.HttpResources;
+import reactor.netty.resources.LoopResources;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class MetricsConfig {
+
+    //Pending tasks per event loop. The WebClients share these loops with the server, so slow downstream
+    //response handling shows up here as well.
+    @Bean
+    public MeterBinder eventLoopMetrics(){
+        return meterRegistry -> {
+            var eventLoopIndex = new AtomicInteger();
+            HttpResources.get().onServer(LoopResources.DEFAULT_NATIVE).forEach(eventExecutor -> {
+                if (eventExecutor instanceof SingleThreadEventExecutor) {
+                    Gauge.builder("reactor.netty.eventloop.pending.tasks", (SingleThreadEventExecutor) eventExecutor,
+                                    SingleThreadEventExecutor::pendingTasks)
+                            .tag("eventLoop", String.valueOf(eventLoopIndex.getAndIncrement()))
+                            .description("Tasks waiting to run on the event loop")
+                            .register(meterRegistry);
+                }
+            });
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+//Binds the restClient.moviesInfoCache block of application.yml
+@Data
+@ConfigurationProperties(prefix = "rest-client.movies-info-cache")
+public class MovieInfoCacheProperties {
+
+    private boolean enabled = true;
+
+    //max. no. of movie infos kept in memory, the least used ones are evicted first
+    private long maximumSize = 10_000;
+
+    //a movie info is dropped from the cache this long after it was loaded
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+    //a movie info older than this is reloaded in the background on the next read, the old value is served meanwhile
+    private Duration refreshAfterWrite = Duration.ofMinutes(1);
+
+    //404s are cached for a short time so that requests for unknown IDs don't reach movies-info-service every time
+    private Duration notFoundExpireAfterWrite = Duration.ofSeconds(30);
+
+    private Invalidation invalidation = new Invalidation();
+
+    //The cached movie infos are updated from the changes streamed by movies-info-service (see MovieInfoChangeListener)
+    @Data
+    public static class Invalidation {
+
+        private boolean enabled = true;
+
+        //used instead of expireAfterWrite and refreshAfterWrite while the change stream is connected, those above
+        //apply again as soon as it isn't (e.g. a standalone mongod without change streams)
+        private Duration expireAfterWrite = Duration.ofHours(1);
+        private Duration refreshAfterWrite = Duration.ofMinutes(10);
+
+        //the stream is reconnected with an exponential backoff between these two
+        private Duration minBackoff = Duration.ofSeconds(1);
+        private Duration maxBackoff = Duration.ofSeconds(30);
+
+        //the connection is considered dead if not even a heartbeat arrives for this long
+        private Duration heartbeatTimeout = Duration.ofSeconds(45);
+    }
+}
@@ -0,0 +1,40 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+//Binds the connection settings of each downstream service from the restClient block of application.yml
+@Data
+@ConfigurationProperties(prefix = "rest-client")
+public class RestClientProperties {
+
+    private Downstream moviesInfo = new Downstream();
+    private Downstream reviews = new Downstream();
+
+    @Data
+    public static class Downstream {
+
+        //connection pool
+        private int maxConnections = 100;
+        private int pendingAcquireMaxCount = 200;//requests waiting for a connection beyond this are rejected
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);//idle/expired connections are closed in the background
+
+        //timeouts
+        private Duration connectTimeout = Duration.ofSeconds(1);
+        private Duration responseTimeout = Duration.ofSeconds(3);
+
+        //HTTP/2 without TLS (prior knowledge), requires server.http2.enabled on the downstream service
+        private boolean h2c = false;
+
+        //asks for Smile (binary JSON) with JSON as the fallback, requires the Smile codecs on the downstream service
+        private boolean smile = true;
+
+        //sends Accept-Encoding: gzip and decompresses the responses, for the downstream services with server.compression
+        private boolean compress = true;
+    }
+}
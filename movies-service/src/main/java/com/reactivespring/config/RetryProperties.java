@@ -0,0 +1,27 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+//Binds the restClient.retry block of application.yml
+@Data
+@ConfigurationProperties(prefix = "rest-client.retry")
+public class RetryProperties {
+
+    private int maxRetries = 3;
+
+    //the n-th retry waits for a random duration between 0 and min(maxBackoff, initialBackoff * 2^n) (full jitter)
+    private Duration initialBackoff = Duration.ofMillis(100);
+    private Duration maxBackoff = Duration.ofSeconds(2);
+
+    //retry budget shared by all the downstream calls: every call adds budgetRatio tokens to the bucket and every
+    //retry takes one, so the retries can't exceed budgetRatio (e.g. 10%) of the calls. budgetMaxTokens caps the
+    //bucket, it starts full to allow a few retries before there's any traffic.
+    private double budgetRatio = 0.1;
+    private int budgetMaxTokens = 10;
+
+    //deadline used when the inbound request doesn't carry the X-Request-Timeout header
+    private Duration defaultRequestTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,24 @@
+package com.reactivespring.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+//Spans are created by Sleuth for the inbound requests and for each WebClient call (so each retry attempt gets its
+//own span). The trace context is carried in the Reactor Context (spring.sleuth.reactor.instrumentation-type: manual).
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(value = "tracing.file.enabled", havingValue = "true")
+    public FileSpanHandler fileSpanHandler(@Value("${tracing.file.path}") Path path,
+                                           @Value("${tracing.file.queueCapacity:10000}") int queueCapacity,
+                                           MeterRegistry meterRegistry) throws IOException {
+        return new FileSpanHandler(path, queueCapacity, meterRegistry);
+    }
+}
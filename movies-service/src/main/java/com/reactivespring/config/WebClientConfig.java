@@ -1,14 +1,86 @@
 package com.reactivespring.config;
 
+import io.netty.channel.ChannelOption;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.List;
 
 @Configuration
 public class WebClientConfig {
 
+    //Each downstream service gets its own connection pool so that a slow service can't use up
+    //the connections needed by the other one.
     @Bean
-    public WebClient webClient(WebClient.Builder builder){
-        return builder.build();
+    public WebClient moviesInfoWebClient(WebClient.Builder builder, RestClientProperties restClientProperties){
+        return buildWebClient(builder, "moviesInfo", restClientProperties.getMoviesInfo());
+    }
+
+    @Bean
+    public WebClient reviewsWebClient(WebClient.Builder builder, RestClientProperties restClientProperties){
+        return buildWebClient(builder, "reviews", restClientProperties.getReviews());
+    }
+
+    //For the long lived /v1/moviechanges stream, which can be quiet for longer than the response timeout.
+    //It has a single connection of its own so it doesn't hold one of the pool used for the movie info calls.
+    @Bean
+    public WebClient moviesInfoChangesWebClient(WebClient.Builder builder, RestClientProperties restClientProperties){
+        var moviesInfo = restClientProperties.getMoviesInfo();
+        var httpClient = HttpClient.create(ConnectionProvider.create("moviesInfoChanges", 1))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) moviesInfo.getConnectTimeout().toMillis());
+
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    private WebClient buildWebClient(WebClient.Builder builder, String name, RestClientProperties.Downstream downstream){
+        var connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(downstream.getMaxConnections())
+                .pendingAcquireMaxCount(downstream.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(downstream.getPendingAcquireTimeout())
+                .maxIdleTime(downstream.getMaxIdleTime())
+                .maxLifeTime(downstream.getMaxLifeTime())
+                .evictInBackground(downstream.getEvictInBackground())
+                .metrics(true)//reactor.netty.connection.provider.* gauges (active, idle, pending connections) tagged with the name
+                .build();
+
+        var httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) downstream.getConnectTimeout().toMillis())
+                .responseTimeout(downstream.getResponseTimeout())
+                .compress(downstream.isCompress());
+
+        if (downstream.isH2c())
+            httpClient = httpClient.protocol(HttpProtocol.H2C);
+
+        if (downstream.isSmile())
+            builder = builder.filter(preferSmile());
+
+        //the builder provided by Spring Boot is a prototype bean, so each WebClient gets its own copy
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    //Asks for Smile first on the calls that take JSON, a downstream without the Smile codecs still answers with JSON.
+    //Calls accepting NDJSON are left alone, the reviews are streamed as NDJSON a review at a time.
+    private static ExchangeFilterFunction preferSmile(){
+        return (request, next) -> {
+            var accept = request.headers().getAccept();
+            if (!accept.isEmpty() && (!accept.contains(MediaType.APPLICATION_JSON) || accept.contains(MediaType.APPLICATION_NDJSON)))
+                return next.exchange(request);
+
+            return next.exchange(ClientRequest.from(request)
+                    .headers(headers -> headers.setAccept(List.of(SmileCodecConfig.APPLICATION_SMILE, MediaType.APPLICATION_JSON)))
+                    .build());
+        };
     }
 }
@@ -1,33 +1,177 @@
 package com.reactivespring.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.reactivespring.client.MoviesInfoRestClient;
 import com.reactivespring.client.ReviewsRestClient;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exception.ReviewsServerException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 @RestController
 @RequestMapping("/v1/movies")
+@Slf4j
 public class MoviesController {
 
     private MoviesInfoRestClient moviesInfoRestClient;
     private ReviewsRestClient reviewsRestClient;
+    private ObjectMapper objectMapper;
+
+    private Duration reviewsTimeout;
+    private boolean reviewsFallbackToEmpty;
+    private int maxBulkIds;
 
-    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient) {
+    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient, ObjectMapper objectMapper,
+                            @Value("${restClient.reviewsTimeout:5s}") Duration reviewsTimeout,
+                            @Value("${restClient.reviewsFallbackToEmpty:true}") boolean reviewsFallbackToEmpty,
+                            @Value("${restClient.maxBulkIds:100}") int maxBulkIds) {
         this.moviesInfoRestClient = moviesInfoRestClient;
         this.reviewsRestClient = reviewsRestClient;
+        this.objectMapper = objectMapper;
+        this.reviewsTimeout = reviewsTimeout;
+        this.reviewsFallbackToEmpty = reviewsFallbackToEmpty;
+        this.maxBulkIds = maxBulkIds;
     }
 
+    //The ETag is a hash of the movie, a client sending it back in If-None-Match gets a 304 without a body while
+    //neither the movie info nor its reviews have changed.
+    //movieInfoFields and reviewFields are passed on as the fields= of the downstream services, e.g.
+    ///v1/movies/1?movieInfoFields=name,year&reviewFields=rating, so only those fields are read and sent.
     @GetMapping("/{id}")
-    public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId){
-        return moviesInfoRestClient.retrieveMovieInfo(movieId)
-                .flatMap(movieInfo -> {
-                    var reviewListMono = reviewsRestClient.retrieveReviews(movieId)
-                            .collectList();
-                    return reviewListMono.map(reviews -> new Movie(movieInfo, reviews));
+    public Mono<ResponseEntity<Movie>> retrieveMovieById(@PathVariable("id") String movieId,
+                                                         @RequestParam(value = "topReviews", required = false) Integer topReviews,
+                                                         @RequestParam(value = "movieInfoFields", required = false) String movieInfoFields,
+                                                         @RequestParam(value = "reviewFields", required = false) String reviewFields){
+        if (topReviews != null)
+            return retrieveMovieWithReviewStats(movieId, topReviews, movieInfoFields, reviewFields).map(this::withETag);
+
+        //zip() subscribes to both the calls at the same time (scatter-gather), so the response takes as long as the
+        //slower of the two calls instead of their sum. If the movie info call fails (e.g. 404), zip() cancels the
+        //reviews call and the error is propagated as before.
+        var movieInfoMono = moviesInfoRestClient.retrieveMovieInfo(movieId, movieInfoFields);
+        var reviewListMono = reviewsRestClient.retrieveReviews(movieId, reviewFields)
+                .collectList()
+                .transform(reviews -> withReviewsFallback(reviews, List.of(), movieId));
+
+        return Mono.zip(movieInfoMono, reviewListMono, Movie::new)
+                .map(this::withETag);
+    }
+
+    //The reviews have no version of their own, so the ETag is the MD5 of the movie as it's written out. The 304
+    //itself is done by ResponseEntityResultHandler. The hash is taken of the JSON, Vary: Accept keeps caches from
+    //answering a Smile request with the JSON (or the other way round).
+    private ResponseEntity<Movie> withETag(Movie movie){
+        try {
+            var eTag = DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(movie));
+            return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(movie);
+        } catch (JsonProcessingException ex) {
+            log.warn("No ETag for the movie ID: {}", movie.getMovieInfo().getMovieInfoId(), ex);
+            return ResponseEntity.ok().body(movie);
+        }
+    }
+
+    //e.g. /v1/movies/1?topReviews=5, the movie with the stats of all its reviews and only its 5 best rated reviews,
+    //so a movie with many reviews doesn't make for a large response. Both come from precomputed data in
+    //movies-review-service and are fetched along with the movie info.
+    private Mono<Movie> retrieveMovieWithReviewStats(String movieId, int topReviews, String movieInfoFields, String reviewFields){
+        var movieInfoMono = moviesInfoRestClient.retrieveMovieInfo(movieId, movieInfoFields);
+        var topReviewsMono = reviewsRestClient.retrieveTopReviews(movieId, topReviews, reviewFields)
+                .collectList()
+                .transform(reviews -> withReviewsFallback(reviews, List.of(), movieId));
+        //Optional as the movie is returned without stats on the fallback
+        var reviewStatsMono = reviewsRestClient.retrieveReviewStats(movieId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .transform(stats -> withReviewsFallback(stats, Optional.<ReviewStats>empty(), movieId));
+
+        return Mono.zip(movieInfoMono, topReviewsMono, reviewStatsMono)
+                .map(movie -> new Movie(movie.getT1(), movie.getT2(), movie.getT3().orElse(null)));
+    }
+
+    //Bulk variant of retrieveMovieById, e.g. /v1/movies?ids=1,2,3. Instead of two calls per movie it makes a single
+    //call to each downstream service and groups the reviews by movieInfoId in memory. More than restClient.maxBulkIds
+    //distinct IDs is a 400, the $in queries and the grouping are bounded by it.
+    @GetMapping
+    public Flux<Movie> retrieveMoviesByIds(@RequestParam("ids") List<String> movieIds,
+                                           @RequestParam(value = "movieInfoFields", required = false) String movieInfoFields,
+                                           @RequestParam(value = "reviewFields", required = false) String reviewFields){
+        var distinctMovieIds = movieIds.stream().distinct().collect(Collectors.toList());
+        if (distinctMovieIds.size() > maxBulkIds)
+            return Flux.error(new ServerWebInputException("At most " + maxBulkIds + " ids can be asked for at a time"));
+
+        //positions of the IDs asked for, looked up by the sort below instead of an indexOf per comparison
+        Map<String, Integer> positions = IntStream.range(0, distinctMovieIds.size())
+                .boxed()
+                .collect(Collectors.toMap(distinctMovieIds::get, index -> index));
+
+        var movieInfoListMono = moviesInfoRestClient.retrieveMovieInfos(distinctMovieIds, movieInfoFields)
+                .collectList();
+        var reviewsByMovieIdMono = reviewsRestClient.retrieveReviews(distinctMovieIds, withMovieInfoId(reviewFields))
+                .collectMultimap(Review::getMovieInfoId)
+                .transform(reviews -> withReviewsFallback(reviews, Map.of(), distinctMovieIds.toString()));
+
+        return Mono.zip(movieInfoListMono, reviewsByMovieIdMono)
+                .flatMapIterable(movieInfosAndReviews -> {
+                    var reviewsByMovieId = movieInfosAndReviews.getT2();
+                    return movieInfosAndReviews.getT1().stream()
+                            .sorted(Comparator.comparingInt(movieInfo -> positions.getOrDefault(movieInfo.getMovieInfoId(), -1)))
+                            .map(movieInfo -> new Movie(movieInfo,
+                                    List.copyOf(reviewsByMovieId.getOrDefault(movieInfo.getMovieInfoId(), List.of()))))
+                            .collect(Collectors.toList());
+                });
+    }
+
+    //the reviews are grouped by movieInfoId, so it's fetched even if it isn't one of the review fields asked for
+    private static String withMovieInfoId(String reviewFields){
+        if (reviewFields == null || Arrays.stream(reviewFields.split(",")).map(String::trim).anyMatch("movieInfoId"::equals))
+            return reviewFields;
+
+        return reviewFields + ",movieInfoId";
+    }
+
+    //The movie is returned without reviews if the reviews service is slow or its circuit breaker/bulkhead
+    //rejects the call, unless restClient.reviewsFallbackToEmpty is false
+    private <T> Mono<T> withReviewsFallback(Mono<T> reviews, T fallback, String movieId){
+        return reviews
+                .timeout(reviewsTimeout)
+                .onErrorResume(TimeoutException.class, ex -> {
+                    log.warn("Reviews for the movie ID: {} not received within {}", movieId, reviewsTimeout);
+                    if (reviewsFallbackToEmpty)
+                        return Mono.just(fallback);
+
+                    return Mono.error(new ReviewsServerException(
+                            "Reviews service didn't respond within " + reviewsTimeout.toMillis() + " ms"));
+                })
+                .onErrorResume(ex -> reviewsFallbackToEmpty
+                        && (ex instanceof CallNotPermittedException || ex instanceof BulkheadFullException), ex -> {
+                    log.warn("Reviews for the movie ID: {} not fetched: {}", movieId, ex.getMessage());
+                    return Mono.just(fallback);
                 });
     }
 }
@@ -1,6 +1,7 @@
 package com.reactivespring.domain;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,4 +15,12 @@ public class Movie {
 
     private MovieInfo movieInfo;
     private List<Review> reviewList;
+
+    //only with /v1/movies/{id}?topReviews=N, the reviewList then holds the N best rated reviews
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ReviewStats reviewStats;
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, null);
+    }
 }
@@ -0,0 +1,23 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//A change to a movie info, streamed by movies-info-service on /v1/moviechanges
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoChange {
+
+    public static final String RESET = "reset";
+
+    private String resumeToken;
+    private String movieInfoId;
+
+    //insert, update, replace or delete, or reset if changes may have been missed
+    private String operation;
+
+    //the movie as it is after the change, null for a delete
+    private MovieInfo movieInfo;
+}
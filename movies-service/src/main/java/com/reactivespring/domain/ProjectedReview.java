@@ -0,0 +1,9 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+//Read with movieInfoFields/reviewFields, the fields that weren't asked for are left out of the response instead of
+//written as nulls
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProjectedReview extends Review {
+}
@@ -0,0 +1,19 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+//Review count, average rating and rating histogram of a movie, maintained by movies-review-service
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewStats {
+
+    private String movieInfoId;
+    private long count;
+    private Double averageRating;//null if no review has a rating
+    private Map<String, Long> ratingHistogram;//number of ratings per whole point, "0" to "10"
+}
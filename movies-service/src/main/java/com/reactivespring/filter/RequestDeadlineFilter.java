@@ -0,0 +1,50 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.config.RetryProperties;
+import com.reactivespring.util.RequestDeadline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+//Puts the deadline of the inbound request into the Reactor Context so that the retries of the downstream
+//calls stop once the caller has given up. The caller can pass its remaining time in ms in the
+//X-Request-Timeout header, otherwise restClient.retry.defaultRequestTimeout is used.
+@Component
+@Slf4j
+public class RequestDeadlineFilter implements WebFilter {
+
+    public static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private RetryProperties retryProperties;
+
+    public RequestDeadlineFilter(RetryProperties retryProperties) {
+        this.retryProperties = retryProperties;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var deadline = Instant.now().plus(requestTimeout(exchange));
+
+        return chain.filter(exchange)
+                .contextWrite(context -> context.put(RequestDeadline.CONTEXT_KEY, deadline));
+    }
+
+    private Duration requestTimeout(ServerWebExchange exchange) {
+        var header = exchange.getRequest().getHeaders().getFirst(REQUEST_TIMEOUT_HEADER);
+        if (header != null) {
+            try {
+                return Duration.ofMillis(Long.parseLong(header.trim()));
+            } catch (NumberFormatException ex) {
+                log.info("Ignoring invalid {} header: {}", REQUEST_TIMEOUT_HEADER, header);
+            }
+        }
+
+        return retryProperties.getDefaultRequestTimeout();
+    }
+}
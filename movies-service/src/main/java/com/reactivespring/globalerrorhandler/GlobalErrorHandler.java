@@ -1,11 +1,14 @@
 package com.reactivespring.globalerrorhandler;
 
 import com.reactivespring.exception.MoviesInfoClientException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ResponseStatusException;
 
 @ControllerAdvice
 @Slf4j
@@ -18,6 +21,22 @@ public class GlobalErrorHandler {
         return ResponseEntity.status(exception.getStatusCode()).body(exception.getMessage());
     }
 
+    //Thrown when the circuit breaker is open or the bulkhead is full for a downstream service
+    @ExceptionHandler({CallNotPermittedException.class, BulkheadFullException.class})
+    public ResponseEntity<String> handleCallNotPermittedException(RuntimeException exception){
+        log.error("Exception caught in handleCallNotPermittedException: {}", exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(exception.getMessage());
+    }
+
+    //Invalid request parameters, e.g. too many ids
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<String> handleResponseStatusException(ResponseStatusException exception){
+        log.error("Exception caught in handleResponseStatusException: {}", exception.getMessage());
+
+        return ResponseEntity.status(exception.getStatus()).body(exception.getReason());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException exception){
         log.error("Exception caught in handleRuntimeException: {}", exception.getMessage());
@@ -0,0 +1,16 @@
+package com.reactivespring.util;
+
+import reactor.util.context.ContextView;
+
+import java.time.Instant;
+import java.util.Optional;
+
+//Deadline of the inbound request, carried in the Reactor Context by RequestDeadlineFilter
+public class RequestDeadline {
+
+    public static final String CONTEXT_KEY = RequestDeadline.class.getName();
+
+    public static Optional<Instant> from(ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+}
@@ -0,0 +1,38 @@
+package com.reactivespring.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//Token bucket limiting the retries to a fraction of the calls. Tokens are kept in thousandths so that the
+//bucket can be updated with a single CAS.
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long depositPerCall;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    public RetryBudget(double ratio, int maxTokens) {
+        this.depositPerCall = Math.round(ratio * SCALE);
+        this.maxBalance = maxTokens * SCALE;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    public void deposit() {
+        balance.accumulateAndGet(depositPerCall, (current, deposit) -> Math.min(maxBalance, current + deposit));
+    }
+
+    public boolean tryWithdraw() {
+        while (true) {
+            var current = balance.get();
+            if (current < SCALE)
+                return false;
+            if (balance.compareAndSet(current, current - SCALE))
+                return true;
+        }
+    }
+
+    public double availableTokens() {
+        return (double) balance.get() / SCALE;
+    }
+}
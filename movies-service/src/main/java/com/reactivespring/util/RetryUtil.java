@@ -1,19 +1,99 @@
 package com.reactivespring.util;
 
+import com.reactivespring.config.RetryProperties;
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsServerException;
-import reactor.core.Exceptions;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.sleuth.TraceContext;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
 
+@Component
+@Slf4j
 public class RetryUtil {
 
-    public static Retry retrySpec(){
-        return Retry.fixedDelay(3, Duration.ofSeconds(1))
-                .filter(ex -> ex instanceof MoviesInfoServerException
-                || ex instanceof ReviewsServerException)//No retries for client exceptions
-                .onRetryExhaustedThrow(((retryBackoffSpec, retrySignal) ->
-                        Exceptions.propagate(retrySignal.failure())));
+    private RetryProperties retryProperties;
+    private RetryBudget retryBudget;
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)//no spans for the backoffs when tracing isn't set up, e.g. in unit tests
+    private Tracer tracer;
+
+    public RetryUtil(RetryProperties retryProperties, MeterRegistry meterRegistry){
+        this.retryProperties = retryProperties;
+        this.meterRegistry = meterRegistry;
+        this.retryBudget = new RetryBudget(retryProperties.getBudgetRatio(), retryProperties.getBudgetMaxTokens());
+
+        Gauge.builder("restclient.retry.budget.tokens", retryBudget, RetryBudget::availableTokens)
+                .description("Retries currently allowed by the retry budget")
+                .register(meterRegistry);
+    }
+
+    //Exponential backoff with full jitter, so that the retries from all the instances don't hit a failing
+    //service in waves. A retry is only made if the retry budget and the deadline of the inbound request allow it,
+    //otherwise the original failure is propagated.
+    public Retry retrySpec(String downstream){
+        return Retry.from(retrySignals -> {
+            retryBudget.deposit();//once per call, not per attempt
+            return retrySignals.concatMap(retrySignal ->
+                    Mono.deferContextual(context -> retryOrFail(retrySignal, downstream, context)));
+        });
+    }
+
+    private Mono<Long> retryOrFail(Retry.RetrySignal retrySignal, String downstream, ContextView context){
+        var failure = retrySignal.failure();
+
+        //No retries for client exceptions
+        if (!(failure instanceof MoviesInfoServerException || failure instanceof ReviewsServerException)
+                || retrySignal.totalRetries() >= retryProperties.getMaxRetries())
+            return Mono.error(failure);
+
+        var backoff = backoff(retrySignal.totalRetries());
+        var deadline = RequestDeadline.from(context);
+        if (deadline.isPresent() && Instant.now().plus(backoff).isAfter(deadline.get())) {
+            log.info("Not retrying the call to {} as the request deadline would be exceeded", downstream);
+            meterRegistry.counter("restclient.retry.deadline.exceeded", "downstream", downstream).increment();
+            return Mono.error(failure);
+        }
+
+        if (!retryBudget.tryWithdraw()) {
+            log.info("Not retrying the call to {} as the retry budget is exhausted", downstream);
+            meterRegistry.counter("restclient.retry.budget.exhausted", "downstream", downstream).increment();
+            return Mono.error(failure);
+        }
+
+        meterRegistry.counter("restclient.retries", "downstream", downstream).increment();
+        return traceBackoff(Mono.delay(backoff), retrySignal, downstream, context);
+    }
+
+    //Each attempt already has its own WebClient span, this adds the wait between the attempts to the trace
+    private Mono<Long> traceBackoff(Mono<Long> delay, Retry.RetrySignal retrySignal, String downstream, ContextView context){
+        var parent = context.<TraceContext>getOrDefault(TraceContext.class, null);
+        if (tracer == null || parent == null)
+            return delay;
+
+        var span = tracer.spanBuilder()
+                .setParent(parent)
+                .name("retry backoff " + downstream)
+                .tag("retry.attempt", String.valueOf(retrySignal.totalRetries() + 1))
+                .tag("retry.failure", retrySignal.failure().getClass().getSimpleName())
+                .start();
+        return delay.doFinally(signalType -> span.end());
+    }
+
+    private Duration backoff(long retryNumber){
+        var exponentialBackoffMillis = retryProperties.getInitialBackoff().toMillis() << Math.min(retryNumber, 30);
+        var cappedBackoffMillis = Math.min(retryProperties.getMaxBackoff().toMillis(), exponentialBackoffMillis);
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cappedBackoffMillis + 1));
     }
 }
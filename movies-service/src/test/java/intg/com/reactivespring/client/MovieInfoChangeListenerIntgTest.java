@@ -0,0 +1,52 @@
+package com.reactivespring.client;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureWireMock(port = 8088)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoURL=http://localhost:8088/v1",
+                "restClient.reviewsURL=http://localhost:8088/v1/reviews",
+                "restClient.moviesInfoCache.invalidation.minBackoff=50ms",
+                "restClient.moviesInfoCache.invalidation.maxBackoff=50ms"
+        }
+)
+public class MovieInfoChangeListenerIntgTest {
+
+    @Test
+    void testMovieInfoChangesUnsupportedStopsReconnecting() throws InterruptedException {
+
+        //movies-info-service without a replica set
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/moviechanges"))
+                .willReturn(aResponse()
+                        .withStatus(501)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"status\":501,\"message\":\"MongoDB isn't a replica set, movie info changes can't be streamed\"}")));
+
+        //the listener may have reconnected before the stub was in place, it stops at the first 501
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (findAll(getRequestedFor(urlEqualTo("/v1/moviechanges"))).isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "the listener didn't connect");
+            Thread.sleep(20);
+        }
+        Thread.sleep(200);
+        var requests = findAll(getRequestedFor(urlEqualTo("/v1/moviechanges"))).size();
+
+        //a reconnect would be every 50ms
+        Thread.sleep(500);
+        assertEquals(requests, findAll(getRequestedFor(urlEqualTo("/v1/moviechanges"))).size());
+    }
+}
@@ -0,0 +1,234 @@
+package com.reactivespring.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.ProjectedMovieInfo;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.util.RequestDeadline;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureWireMock(port = 8085)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoURL=http://localhost:8085/v1",
+                "restClient.reviewsURL=http://localhost:8085/v1/reviews",
+                "restClient.moviesInfoCache.invalidation.minBackoff=100ms",
+                "restClient.moviesInfoCache.invalidation.maxBackoff=200ms"
+        }
+)
+public class MoviesInfoRestClientIntgTest {
+
+    @Autowired
+    MoviesInfoRestClient moviesInfoRestClient;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void testRetrieveMovieInfoLoadHasItsOwnDeadline(){
+
+        var movieId = "DEADLINE";
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId))
+                .inScenario("deadline")
+                .whenScenarioStateIs(STARTED)
+                .willReturn(aResponse()
+                        .withStatus(500)
+                        .withBody("MovieInfo Service Unavailable"))
+                .willSetStateTo("recovered"));
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId))
+                .inScenario("deadline")
+                .whenScenarioStateIs("recovered")
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        //the read starting the load gives up at its deadline
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null)
+                        .contextWrite(context -> context.put(RequestDeadline.CONTEXT_KEY, Instant.now().minusSeconds(1))))
+                .expectError(MoviesInfoServerException.class)
+                .verify();
+
+        //the load retries under a deadline of its own, the next read gets the movie from it
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null).map(MovieInfo::getName))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        WireMock.verify(2, getRequestedFor(urlEqualTo("/v1/findmovie/" + movieId)));
+    }
+
+    @Test
+    void testRetrieveMovieInfoCancelledReadKeepsTheLoad(){
+
+        var movieId = "CANCELLED";
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withFixedDelay(300)
+                        .withBodyFile("movieinfo.json")));
+
+        //the read starting the load is cancelled while the load is in flight
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null))
+                .thenAwait(Duration.ofMillis(50))
+                .thenCancel()
+                .verify();
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null).map(MovieInfo::getName))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/findmovie/" + movieId)));
+    }
+
+    @Test
+    void testRetrieveMovieInfoConcurrentMissesShareOneCall(){
+
+        var movieId = "CACHED";
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withFixedDelay(200)
+                        .withBodyFile("movieinfo.json")));
+
+        var movieInfos = Flux.range(0, 10)
+                .flatMap(i -> moviesInfoRestClient.retrieveMovieInfo(movieId, null));
+
+        StepVerifier.create(movieInfos)
+                .expectNextCount(10)
+                .verifyComplete();
+
+        //served from the cache
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null).map(MovieInfo::getName))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/findmovie/" + movieId)));
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "movieInfo").tag("result", "hit")
+                .functionCounter().count() >= 1);
+    }
+
+    @Test
+    void testRetrieveMovieInfosAsSmile() throws JsonProcessingException {
+
+        var movieInfos = List.of(
+                new MovieInfo("SMILE1", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("SMILE2", "The Dark Knight", 2008, List.of("Christian Bale"), LocalDate.parse("2008-07-18")));
+        var smileMapper = Jackson2ObjectMapperBuilder.smile().build();
+
+        //only answers with Smile when it's asked for first
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovies?ids=SMILE1,SMILE2"))
+                .withHeader("Accept", matching("application/x-jackson-smile,.*"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/x-jackson-smile")
+                        .withBody(smileMapper.writeValueAsBytes(movieInfos))));
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfos(List.of("SMILE1", "SMILE2"), null))
+                .expectNextSequence(movieInfos)
+                .verifyComplete();
+    }
+
+    @Test
+    void testRetrieveMovieInfoWithFieldsIsProjected(){
+
+        var movieId = "PROJECTED";
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId + "?fields=name"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"movieInfoId\":\"PROJECTED\",\"name\":\"Batman Begins\"}")));
+
+        //written without the fields that weren't fetched, a whole movie info keeps them as nulls
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, "name"))
+                .expectNextMatches(movieInfo -> movieInfo instanceof ProjectedMovieInfo && movieInfo.getName().equals("Batman Begins"))
+                .verifyComplete();
+    }
+
+    @Test
+    void testRetrieveMovieInfoNotFoundIsCached(){
+
+        var movieId = "UNKNOWN";
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null))
+                    .expectErrorMatches(ex -> ex instanceof MoviesInfoClientException
+                            && ((MoviesInfoClientException) ex).getStatusCode() == 404)
+                    .verify(Duration.ofSeconds(5));
+        }
+
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/findmovie/" + movieId)));
+    }
+
+    @Test
+    void testMovieInfoChangesUpdateTheCache() throws InterruptedException {
+
+        var movieId = "CHANGED";
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        //MovieInfoChangeListener reconnects every 100ms once a stream ends, the first connection gets a change
+        //to another movie and the ones after that resume after the last change and get the change to this one
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/moviechanges"))
+                .withHeader("Last-Event-ID", absent())
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "text/event-stream")
+                        .withBody("id:8200\nevent:delete\ndata:{\"resumeToken\":\"8200\",\"movieInfoId\":\"OTHER\",\"operation\":\"delete\"}\n\n")));
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/moviechanges"))
+                .withHeader("Last-Event-ID", matching(".+"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "text/event-stream")
+                        .withBody(":heartbeat\n\nid:8201\nevent:update\ndata:{\"resumeToken\":\"8201\",\"movieInfoId\":\"CHANGED\",\"operation\":\"update\","
+                                + "\"movieInfo\":{\"movieInfoId\":\"CHANGED\",\"name\":\"Batman Begins (Director's Cut)\",\"year\":2005}}\n\n")));
+
+        //the listener has resumed the stream, a cached movie isn't dropped by a reconnect from now on
+        //(polled on the test thread, the static WireMock client is set up per thread)
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (findAll(getRequestedFor(urlEqualTo("/v1/moviechanges")).withHeader("Last-Event-ID", equalTo("8200"))).isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "the change stream wasn't resumed");
+            Thread.sleep(20);
+        }
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null).map(MovieInfo::getName))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        //the change is applied to the cached movie by the next reconnect
+        var updatedName = Flux.interval(Duration.ofMillis(50))
+                .concatMap(tick -> moviesInfoRestClient.retrieveMovieInfo(movieId, null).map(MovieInfo::getName))
+                .filter(name -> !name.equals("Batman Begins"))
+                .blockFirst(Duration.ofSeconds(10));
+
+        //movies-info-service keeps returning the old name, the new one can only come from the change
+        assertTrue(updatedName.endsWith("(Director's Cut)"));
+    }
+}
@@ -0,0 +1,119 @@
+package com.reactivespring.client;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//Separate from MoviesInfoRestClientIntgTest, the short refreshAfterWrite would refresh the movies of its tests
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureWireMock(port = 8085)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoURL=http://localhost:8085/v1",
+                "restClient.reviewsURL=http://localhost:8085/v1/reviews",
+                "restClient.moviesInfoCache.refreshAfterWrite=200ms",
+                "restClient.moviesInfoCache.invalidation.enabled=false"
+        }
+)
+public class MoviesInfoRestClientRefreshIntgTest {
+
+    @Autowired
+    MoviesInfoRestClient moviesInfoRestClient;
+
+    @Test
+    void testRetrieveMovieInfoRefreshIsConditional() throws InterruptedException {
+
+        var movieId = "REFRESHED";
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("ETag", "\"1\"")
+                        .withBodyFile("movieinfo.json")));
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId))
+                .withHeader("If-None-Match", equalTo("\"1\""))
+                .willReturn(aResponse()
+                        .withStatus(304)
+                        .withHeader("ETag", "\"1\"")));
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null).map(MovieInfo::getName))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        //a read after refreshAfterWrite starts the refresh in the background
+        Thread.sleep(300);
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null).map(MovieInfo::getName))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (findAll(getRequestedFor(urlEqualTo("/v1/findmovie/" + movieId)).withHeader("If-None-Match", equalTo("\"1\""))).isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "the movie info wasn't refreshed");
+            Thread.sleep(20);
+        }
+
+        //the 304 kept the cached movie info
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null).map(MovieInfo::getName))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/findmovie/" + movieId)).withHeader("If-None-Match", absent()));
+    }
+
+    @Test
+    void testRetrieveMovieInfoRefreshKeepsNewerChange() throws InterruptedException {
+
+        var movieId = "REFRESHEDCHANGED";
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("ETag", "\"1\"")
+                        .withBodyFile("movieinfo.json")));
+        //the refresh gets the movie info as it was before the change
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie/" + movieId))
+                .withHeader("If-None-Match", equalTo("\"1\""))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("ETag", "\"1\"")
+                        .withFixedDelay(500)
+                        .withBodyFile("movieinfo.json")));
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null).map(MovieInfo::getName))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        Thread.sleep(300);
+        moviesInfoRestClient.retrieveMovieInfo(movieId, null).block();//starts the refresh
+
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (findAll(getRequestedFor(urlEqualTo("/v1/findmovie/" + movieId)).withHeader("If-None-Match", equalTo("\"1\""))).isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "the movie info wasn't refreshed");
+            Thread.sleep(20);
+        }
+
+        //changed while the refresh is in flight
+        moviesInfoRestClient.applyChange(new MovieInfoChange("1", movieId, "update",
+                new MovieInfo(movieId, "Batman Begins (Director's Cut)", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"))));
+        Thread.sleep(1000);
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId, null).map(MovieInfo::getName))
+                .expectNext("Batman Begins (Director's Cut)")
+                .verifyComplete();
+    }
+}
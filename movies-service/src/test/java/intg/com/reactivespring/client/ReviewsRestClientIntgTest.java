@@ -0,0 +1,77 @@
+package com.reactivespring.client;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.exception.ReviewsServerException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureWireMock(port = 8087)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoURL=http://localhost:8087/v1",
+                "restClient.reviewsURL=http://localhost:8087/v1/reviews",
+                "restClient.reviews.compress=false",//WireMock would gzip the whole response in one go
+                "restClient.moviesInfoCache.invalidation.enabled=false"
+        }
+)
+public class ReviewsRestClientIntgTest {
+
+    @Autowired
+    ReviewsRestClient reviewsRestClient;
+
+    @Test
+    void testRetrieveReviewsIsStreamed(){
+
+        //two reviews of the same length, sent a second apart
+        var body = "{\"reviewId\":\"1\",\"movieInfoId\":\"1\",\"comment\":\"Awesome Movie\",\"rating\":9.0}\n"
+                + "{\"reviewId\":\"2\",\"movieInfoId\":\"1\",\"comment\":\"Amazing Movie\",\"rating\":8.0}\n";
+        stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/reviews"))
+                .withHeader("Accept", containing("application/x-ndjson"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/x-ndjson")
+                        .withBody(body)
+                        .withChunkedDribbleDelay(2, 2000)));
+
+        //the first review is emitted as soon as it's read, not once the whole response is in
+        StepVerifier.create(reviewsRestClient.retrieveReviews("1", null).elapsed())
+                .assertNext(review -> assertEquals("1", review.getT2().getReviewId()))
+                .assertNext(review -> {
+                    assertEquals("2", review.getT2().getReviewId());
+                    assertTrue(review.getT1() >= 500, "the second review came " + review.getT1() + " ms after the first");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testRetrieveReviews5XX(){
+
+        stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withStatus(500)
+                        .withBody("Reviews service unavailable")));
+
+        //every review call reports a 5xx of the reviews service, not of the movie info service
+        StepVerifier.create(reviewsRestClient.retrieveReviews("ABC", null))
+                .expectErrorMessage("Server exception in ReviewsService: Reviews service unavailable")
+                .verify();
+        StepVerifier.create(reviewsRestClient.retrieveReviews(List.of("ABC", "DEF"), null))
+                .expectError(ReviewsServerException.class)
+                .verify();
+        StepVerifier.create(reviewsRestClient.retrieveTopReviews("ABC", 5, null))
+                .expectError(ReviewsServerException.class)
+                .verify();
+    }
+}
@@ -6,10 +6,16 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 
@@ -20,7 +26,8 @@ import static com.github.tomakehurst.wiremock.client.WireMock.*;
 @TestPropertySource(
         properties = {
                 "restClient.moviesInfoURL=http://localhost:8084/v1",
-                "restClient.reviewsURL=http://localhost:8084/v1/reviews"
+                "restClient.reviewsURL=http://localhost:8084/v1/reviews",
+                "restClient.moviesInfoCache.enabled=false"//every test stubs the same movie ID differently
         }
 )
 public class MoviesControllerIntgTest {
@@ -28,6 +35,9 @@ public class MoviesControllerIntgTest {
     @Autowired
     WebTestClient webTestClient;
 
+    @LocalServerPort
+    int port;
+
     @Test
     void testRetrieveMovieById(){
 
@@ -56,6 +66,43 @@ public class MoviesControllerIntgTest {
                 });
     }
 
+    @Test
+    void testRetrieveMovieByIdCompressed(){
+
+        var movieId = "GZIP";
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        //enough reviews for the movie to be over server.compression.min-response-size
+        var reviews = IntStream.rangeClosed(1, 50)
+                .mapToObj(reviewId -> "{\"reviewId\": \"" + reviewId + "\", \"movieInfoId\": \"" + movieId + "\", "
+                        + "\"comment\": \"Awesome Movie\", \"rating\": 9.0}")
+                .collect(Collectors.joining(",", "[", "]"));
+        stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(reviews)));
+
+        //the autoconfigured WebTestClient doesn't go through Netty, which is where the responses are compressed,
+        //and the default connector would decompress the response
+        WebTestClient.bindToServer(new ReactorClientHttpConnector(HttpClient.create()))
+                .baseUrl("http://localhost:" + port)
+                .build()
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .header("Accept-Encoding", "gzip")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("Content-Encoding", "gzip");
+
+        //the downstream calls ask for compressed responses too (and WireMock gzips them)
+        WireMock.verify(getRequestedFor(urlPathEqualTo("/v1/reviews"))
+                .withHeader("Accept-Encoding", containing("gzip")));
+    }
+
     @Test
     void testRetrieveMovieById_404NotFound(){
 
@@ -147,9 +194,44 @@ public class MoviesControllerIntgTest {
                 .expectStatus()
                 .is5xxServerError()
                 .expectBody(String.class)
-                .isEqualTo("Server exception in MoviesInfoService: Reviews service unavailable");
+                .isEqualTo("Server exception in ReviewsService: Reviews service unavailable");
 
         //verify if the retries happened 3 times which means the call was made 4 times in total
         WireMock.verify(4, getRequestedFor(urlPathMatching("/v1/reviews*")));
     }
+
+    @Test
+    void testRetrieveMoviesByIds(){
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovies?ids=1,2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[" +
+                                "{\"movieInfoId\": \"2\", \"name\": \"The Dark Knight\", \"year\": 2008, \"cast\": [\"Christian Bale\"]}," +
+                                "{\"movieInfoId\": \"1\", \"name\": \"Batman Begins\", \"year\": 2005, \"cast\": [\"Christian Bale\"]}" +
+                                "]")));
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/reviews?movieInfoIds=1,2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient.get()
+                .uri("/v1/movies?ids=1,2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .consumeWith(listEntityExchangeResult -> {
+                    var movies = listEntityExchangeResult.getResponseBody();
+                    assert movies != null;
+                    assert movies.size() == 2;
+                    assert movies.get(0).getMovieInfo().getName().equals("Batman Begins");//same order as the IDs
+                    assert movies.get(0).getReviewList().size() == 2;
+                    assert movies.get(1).getReviewList().size() == 0;
+                });
+
+        //one call to each downstream service irrespective of the number of movies
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/findmovies?ids=1,2")));
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/reviews?movieInfoIds=1,2")));
+    }
 }
@@ -0,0 +1,61 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+
+//The movie info cache is left on, as it is by default, so the movie info is loaded by the cache and not by the request
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 8086)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoURL=http://localhost:8086/v1",
+                "restClient.reviewsURL=http://localhost:8086/v1/reviews",
+                "restClient.moviesInfoCache.invalidation.enabled=false"
+        }
+)
+public class MoviesControllerTracingIntgTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Test
+    void testRetrieveMovieByIdPropagatesTraceContext(){
+
+        var movieId = "TRC";
+        var traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+        stubFor(WireMock.get(WireMock.urlEqualTo("/v1/findmovie" + "/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(WireMock.get(WireMock.urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .header("traceparent", "00-" + traceId + "-00f067aa0ba902b7-01")
+                .exchange()
+                .expectStatus().isOk();
+
+        //both the downstream calls are part of the inbound trace
+        WireMock.verify(getRequestedFor(urlEqualTo("/v1/findmovie" + "/" + movieId))
+                .withHeader("traceparent", matching("00-" + traceId + "-[0-9a-f]{16}-01")));
+        WireMock.verify(getRequestedFor(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .withHeader("traceparent", matching("00-" + traceId + "-[0-9a-f]{16}-01")));
+    }
+}
@@ -0,0 +1,64 @@
+package com.reactivespring.config;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileSpanHandlerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void endWritesOneLinePerFinishedSpan() throws Exception {
+        var path = tempDir.resolve("traces/spans.jsonl");
+        var fileSpanHandler = new FileSpanHandler(path, 100, new SimpleMeterRegistry());
+
+        fileSpanHandler.end(context(1), span("first"), SpanHandler.Cause.FINISHED);
+        fileSpanHandler.end(context(2), span("abandoned"), SpanHandler.Cause.ABANDONED);
+        fileSpanHandler.end(context(3), span("second"), SpanHandler.Cause.FINISHED);
+        fileSpanHandler.close();
+
+        var lines = Files.readAllLines(path);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"name\":\"first\""));
+        assertTrue(lines.get(1).contains("\"name\":\"second\""));
+    }
+
+    @Test
+    void endDropsSpansWhenTheQueueIsFull() throws Exception {
+        var path = tempDir.resolve("spans.jsonl");
+        var meterRegistry = new SimpleMeterRegistry();
+        var fileSpanHandler = new FileSpanHandler(path, 1, meterRegistry);
+
+        for (int i = 1; i <= 1000; i++)
+            fileSpanHandler.end(context(i), span("span" + i), SpanHandler.Cause.FINISHED);
+        fileSpanHandler.close();
+
+        //every span is either in the file or counted as dropped
+        var dropped = meterRegistry.counter("tracing.file.spans.dropped").count();
+        assertTrue(dropped > 0);
+        assertEquals(1000, Files.readAllLines(path).size() + (long) dropped);
+    }
+
+    private static TraceContext context(long spanId) {
+        return TraceContext.newBuilder().traceId(1).spanId(spanId).build();
+    }
+
+    private static MutableSpan span(String name) {
+        var span = new MutableSpan();
+        span.name(name);
+        span.startTimestamp(1_000_000L);
+        span.finishTimestamp(1_000_100L);
+        return span;
+    }
+}
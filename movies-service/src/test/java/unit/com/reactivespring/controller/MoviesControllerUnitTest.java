@@ -1,4 +1,282 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.config.RetryProperties;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.ProjectedMovieInfo;
+import com.reactivespring.domain.ProjectedReview;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exception.MoviesInfoClientException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = MoviesController.class)
+@AutoConfigureWebTestClient
+@TestPropertySource(properties = {"restClient.reviewsTimeout=500ms", "restClient.maxBulkIds=3"})
+@EnableConfigurationProperties(RetryProperties.class)//used by RequestDeadlineFilter
 public class MoviesControllerUnitTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private MoviesInfoRestClient moviesInfoRestClientMock;
+
+    @MockBean
+    private ReviewsRestClient reviewsRestClientMock;
+
+    private static final String MOVIES_URL = "/v1/movies";
+
+    private final MovieInfo movieInfo = new MovieInfo("ABC", "Batman Begins", 2005,
+            List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+    @Test
+    void testRetrieveMovieByIdCallsDownstreamsInParallel() {
+        var reviewsSubscribed = new AtomicBoolean();
+
+        //movie info is only emitted once the reviews call has been subscribed to, which can't happen
+        //if the reviews are fetched after the movie info
+        when(moviesInfoRestClientMock.retrieveMovieInfo("ABC", null))
+                .thenReturn(Mono.delay(Duration.ofMillis(100))
+                        .map(tick -> {
+                            assertTrue(reviewsSubscribed.get());
+                            return movieInfo;
+                        }));
+        when(reviewsRestClientMock.retrieveReviews("ABC", null))
+                .thenReturn(Flux.just(new Review("1", "1", "Awesome Movie", 9.0))
+                        .doOnSubscribe(subscription -> reviewsSubscribed.set(true)));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "ABC")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assertNotNull(movie);
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                    assertEquals(1, movie.getReviewList().size());
+                });
+    }
+
+    @Test
+    void testRetrieveMovieByIdNotModified() {
+        when(moviesInfoRestClientMock.retrieveMovieInfo("ABC", null)).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClientMock.retrieveReviews("ABC", null)).thenReturn(Flux.just(new Review("1", "1", "Awesome Movie", 9.0)));
+
+        var eTag = webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "ABC")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals("Vary", "Accept")
+                .returnResult(Movie.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(eTag);
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "ABC")
+                .header("If-None-Match", eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        //a new review changes the ETag
+        when(reviewsRestClientMock.retrieveReviews("ABC", null)).thenReturn(Flux.just(new Review("1", "1", "Awesome Movie", 9.0),
+                new Review("2", "1", "Good Movie", 7.0)));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "ABC")
+                .header("If-None-Match", eTag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .value("ETag", newETag -> assertNotEquals(eTag, newETag));
+    }
+
+    @Test
+    void testRetrieveMovieByIdReviewsTimeoutFallsBackToEmptyList() {
+        when(moviesInfoRestClientMock.retrieveMovieInfo("ABC", null)).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClientMock.retrieveReviews("ABC", null)).thenReturn(Flux.never());
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "ABC")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assertNotNull(movie);
+                    assertEquals(0, movie.getReviewList().size());
+                });
+    }
+
+    @Test
+    void testRetrieveMovieByIdReviewsCircuitOpenFallsBackToEmptyList() {
+        when(moviesInfoRestClientMock.retrieveMovieInfo("ABC", null)).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClientMock.retrieveReviews("ABC", null))
+                .thenReturn(Flux.error(CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("reviews"))));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "ABC")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assertNotNull(movie);
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                    assertEquals(0, movie.getReviewList().size());
+                });
+    }
+
+    @Test
+    void testRetrieveMovieByIdMovieInfoCircuitOpen() {
+        when(moviesInfoRestClientMock.retrieveMovieInfo("ABC", null))
+                .thenReturn(Mono.error(CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("moviesInfo"))));
+        when(reviewsRestClientMock.retrieveReviews("ABC", null)).thenReturn(Flux.never());
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "ABC")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(503);
+    }
+
+    @Test
+    void testRetrieveMovieByIdMovieInfoNotFound() {
+        when(moviesInfoRestClientMock.retrieveMovieInfo("ABC", null))
+                .thenReturn(Mono.error(new MoviesInfoClientException("There is no movie info available for the ID: ABC", 404)));
+        when(reviewsRestClientMock.retrieveReviews("ABC", null)).thenReturn(Flux.never());
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "ABC")
+                .exchange()
+                .expectStatus()
+                .isNotFound()
+                .expectBody(String.class)
+                .isEqualTo("There is no movie info available for the ID: ABC");
+    }
+
+    @Test
+    void testRetrieveMovieByIdWithTopReviews() {
+        when(moviesInfoRestClientMock.retrieveMovieInfo("ABC", null)).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClientMock.retrieveTopReviews("ABC", 1, null))
+                .thenReturn(Flux.just(new Review("1", "1", "Awesome Movie", 9.0)));
+        when(reviewsRestClientMock.retrieveReviewStats("ABC"))
+                .thenReturn(Mono.just(new ReviewStats("1", 3, 8.0, Map.of("7", 1L, "8", 1L, "9", 1L))));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}?topReviews=1", "ABC")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assertNotNull(movie);
+                    assertEquals(1, movie.getReviewList().size());
+                    assertEquals(3, movie.getReviewStats().getCount());
+                    assertEquals(8.0, movie.getReviewStats().getAverageRating());
+                });
+    }
+
+    @Test
+    void testRetrieveMovieByIdWithTopReviewsStatsTimeoutFallsBackToNoStats() {
+        when(moviesInfoRestClientMock.retrieveMovieInfo("ABC", null)).thenReturn(Mono.just(movieInfo));
+        when(reviewsRestClientMock.retrieveTopReviews("ABC", 1, null))
+                .thenReturn(Flux.just(new Review("1", "1", "Awesome Movie", 9.0)));
+        when(reviewsRestClientMock.retrieveReviewStats("ABC")).thenReturn(Mono.never());
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}?topReviews=1", "ABC")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.movieInfo.name").isEqualTo("Batman Begins")
+                .jsonPath("$.reviewList.length()").isEqualTo(1)
+                .jsonPath("$.reviewStats").doesNotExist();
+    }
+
+    @Test
+    void testRetrieveMoviesByIdsWithFields() {
+        var movieInfo = new ProjectedMovieInfo();
+        movieInfo.setMovieInfoId("ABC");
+        movieInfo.setName("Batman Begins");
+        var review = new ProjectedReview();
+        review.setReviewId("1");
+        review.setMovieInfoId("ABC");
+        review.setRating(9.0);
+
+        when(moviesInfoRestClientMock.retrieveMovieInfos(List.of("ABC"), "name"))
+                .thenReturn(Flux.just(movieInfo));
+        //the reviews are grouped by movieInfoId, so it's asked for on top of the rating
+        when(reviewsRestClientMock.retrieveReviews(List.of("ABC"), "rating,movieInfoId"))
+                .thenReturn(Flux.just(review));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?ids=ABC&movieInfoFields=name&reviewFields=rating")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$[0].movieInfo.name").isEqualTo("Batman Begins")
+                .jsonPath("$[0].movieInfo.cast").doesNotExist()
+                .jsonPath("$[0].reviewList[0].rating").isEqualTo(9.0)
+                .jsonPath("$[0].reviewList[0].comment").doesNotExist();
+    }
+
+    @Test
+    void testRetrieveMoviesByIdsTooMany() {
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?ids=A,B,C,D")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("At most 3 ids can be asked for at a time");
+    }
 }
@@ -0,0 +1,93 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.RetryProperties;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RetryUtilTest {
+
+    private RetryProperties retryProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicInteger attempts;
+
+    @BeforeEach
+    void setUp() {
+        retryProperties = new RetryProperties();
+        retryProperties.setInitialBackoff(Duration.ofMillis(10));
+        retryProperties.setMaxBackoff(Duration.ofMillis(50));
+        meterRegistry = new SimpleMeterRegistry();
+        attempts = new AtomicInteger();
+    }
+
+    private Mono<String> failingCall(RuntimeException ex) {
+        return Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(ex);
+        });
+    }
+
+    @Test
+    void testRetriesServerExceptions() {
+        var retryUtil = new RetryUtil(retryProperties, meterRegistry);
+
+        StepVerifier.create(failingCall(new MoviesInfoServerException("down")).retryWhen(retryUtil.retrySpec("moviesInfo")))
+                .expectError(MoviesInfoServerException.class)//original failure, not RetryExhaustedException
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(4, attempts.get());
+        assertEquals(3, meterRegistry.counter("restclient.retries", "downstream", "moviesInfo").count());
+    }
+
+    @Test
+    void testNoRetriesForClientExceptions() {
+        var retryUtil = new RetryUtil(retryProperties, meterRegistry);
+
+        StepVerifier.create(failingCall(new MoviesInfoClientException("not found", 404)).retryWhen(retryUtil.retrySpec("moviesInfo")))
+                .expectError(MoviesInfoClientException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void testRetryBudgetExhausted() {
+        retryProperties.setBudgetMaxTokens(2);
+        var retryUtil = new RetryUtil(retryProperties, meterRegistry);
+
+        StepVerifier.create(failingCall(new MoviesInfoServerException("down")).retryWhen(retryUtil.retrySpec("moviesInfo")))
+                .expectError(MoviesInfoServerException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(3, attempts.get());//2 retries allowed by the budget
+        assertEquals(1, meterRegistry.counter("restclient.retry.budget.exhausted", "downstream", "moviesInfo").count());
+    }
+
+    @Test
+    void testNoRetriesPastRequestDeadline() {
+        retryProperties.setInitialBackoff(Duration.ofSeconds(1));
+        retryProperties.setMaxBackoff(Duration.ofSeconds(1));
+        var retryUtil = new RetryUtil(retryProperties, meterRegistry);
+
+        var call = failingCall(new MoviesInfoServerException("down"))
+                .retryWhen(retryUtil.retrySpec("moviesInfo"))
+                .contextWrite(context -> context.put(RequestDeadline.CONTEXT_KEY, Instant.now().minusMillis(1)));
+
+        StepVerifier.create(call)
+                .expectError(MoviesInfoServerException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1, attempts.get());
+        assertEquals(1, meterRegistry.counter("restclient.retry.deadline.exceeded", "downstream", "moviesInfo").count());
+    }
+}
@@ -0,0 +1,95 @@
+package com.learnreactiveprogramming.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+//The operator chains of FluxAndMonoGeneratorService (names split into characters, merging and zipping fluxes),
+//without the delayElements() and log() calls the service uses for demonstration. Those would make the benchmarks
+//measure the delays and the logging instead of the operators.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OperatorChainBenchmark {
+
+    @Param({"3", "100", "10000"})
+    private int nameCount;
+
+    private List<String> names;
+
+    @Setup
+    public void setUp() {
+        var baseNames = List.of("Kaivalya", "Sourav", "Srivastava");
+        names = IntStream.range(0, nameCount)
+                .mapToObj(i -> baseNames.get(i % baseNames.size()))
+                .collect(Collectors.toList());
+    }
+
+    private static Flux<String> splitString(String name){
+        return Flux.fromArray(name.split(""));
+    }
+
+    //same as fluxFlatMapOperator(), the inner fluxes are subscribed to eagerly and their elements interleaved
+    @Benchmark
+    public void flatMap(Blackhole blackhole) {
+        Flux.fromIterable(names)
+                .map(String::toUpperCase)
+                .flatMap(OperatorChainBenchmark::splitString)
+                .subscribe(blackhole::consume);
+    }
+
+    //one inner flux at a time, keeps the order
+    @Benchmark
+    public void concatMap(Blackhole blackhole) {
+        Flux.fromIterable(names)
+                .map(String::toUpperCase)
+                .concatMap(OperatorChainBenchmark::splitString)
+                .subscribe(blackhole::consume);
+    }
+
+    //subscribes eagerly like flatMap but keeps the order like concatMap, so it has to buffer
+    @Benchmark
+    public void flatMapSequential(Blackhole blackhole) {
+        Flux.fromIterable(names)
+                .map(String::toUpperCase)
+                .flatMapSequential(OperatorChainBenchmark::splitString)
+                .subscribe(blackhole::consume);
+    }
+
+    //same as mergeSequentialOperation() with nameCount fluxes instead of two
+    @Benchmark
+    public void mergeSequential(Blackhole blackhole) {
+        Flux.mergeSequential(names.stream()
+                        .map(OperatorChainBenchmark::splitString)
+                        .collect(Collectors.toList()))
+                .subscribe(blackhole::consume);
+    }
+
+    //same as zipOperationWithoutCombinator(), four fluxes zipped into one
+    @Benchmark
+    public void zipFanIn(Blackhole blackhole) {
+        var flux = Flux.fromIterable(names).map(String::length);
+
+        Flux.zip(flux, flux.map(length -> length * 2), flux.map(length -> length * 3), flux.map(length -> length * 4))
+                .map(t4 -> t4.getT1() + t4.getT2() + t4.getT3() + t4.getT4())
+                .subscribe(blackhole::consume);
+    }
+
+    //same as zipOperationWithoutCombinatorMono(), the fan-in movies-service does for every movie.
+    //Doesn't depend on nameCount.
+    @Benchmark
+    public void monoZipFanIn(Blackhole blackhole) {
+        Mono.zip(Mono.just(24), Mono.just(42), Mono.just(105), Mono.just(78))
+                .map(t4 -> t4.getT1() + t4.getT2() + t4.getT3() + t4.getT4())
+                .subscribe(blackhole::consume);
+    }
+}
@@ -1,5 +1,6 @@
 package com.learnreactiveprogramming.service;
 
+import com.learnreactiveprogramming.util.SignalTracer;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -10,13 +11,23 @@ import java.util.function.Function;
 
 public class FluxAndMonoGeneratorService {
 
+    private final SignalTracer signalTracer;
+
+    public FluxAndMonoGeneratorService() {
+        this(SignalTracer.fromSystemProperties());
+    }
+
+    public FluxAndMonoGeneratorService(SignalTracer signalTracer) {
+        this.signalTracer = signalTracer;
+    }
+
     public Flux<String> namesFlux(){
         //A flux usually comes from a DB or as a result of a service call.
-        return Flux.fromIterable(List.of("Kaivalya", "Sourav", "Srivastava")).log();
+        return Flux.fromIterable(List.of("Kaivalya", "Sourav", "Srivastava")).transform(signalTracer.flux("namesFlux"));
     }
 
     public Mono<String> nameMono(){
-        return Mono.just("Kaivalya").log();
+        return Mono.just("Kaivalya").transform(signalTracer.mono("nameMono"));
     }
 
     public Flux<String> namesFluxImmutable(){
@@ -27,7 +38,7 @@ public class FluxAndMonoGeneratorService {
     public Flux<String> fluxTransformUsingMap(){
         return Flux.fromIterable(List.of("Kaivalya", "Sourav", "Srivastava"))
                 .map(String :: toUpperCase)
-                .log();
+                .transform(signalTracer.flux("fluxTransformUsingMap"));
     }
 
     public Flux<String> fluxFilterOperator(int minLength){
@@ -49,7 +60,7 @@ public class FluxAndMonoGeneratorService {
         return Flux.fromIterable(List.of("Kaivalya", "Sourav", "Srivastava"))
                 .map(String :: toUpperCase)
                 .flatMap(s -> splitString(s))
-                .log();
+                .transform(signalTracer.flux("fluxFlatMapOperator"));
     }
 
     public Mono<List<String>> monoFlatMapOperator(int minLength){
@@ -57,7 +68,7 @@ public class FluxAndMonoGeneratorService {
                 .map(String::toUpperCase)
                 .filter(s -> s.length() > minLength)
                 .flatMap(s -> getCharList(s))
-                .log();
+                .transform(signalTracer.mono("monoFlatMapOperator"));
     }
 
     public Flux<String> flatMapManyOperator(int minLength){
@@ -65,7 +76,7 @@ public class FluxAndMonoGeneratorService {
                 .map(String::toUpperCase)
                 .filter(s -> s.length() > minLength)
                 .flatMapMany(this::splitString)
-                .log();
+                .transform(signalTracer.flux("flatMapManyOperator"));
     }
 
     public  Flux<String> fluxTransformOperator(int minLength){
@@ -82,7 +93,7 @@ public class FluxAndMonoGeneratorService {
                 //switchIfEmpty() is another option but it takes & returns a flux instead of an instance of same type.
                 .defaultIfEmpty("EMPTY!")
                 //.switchIfEmpty(Flux.just("EMPTY!"))
-                .log();
+                .transform(signalTracer.flux("fluxTransformOperator"));
     }
 
     //concat() is only applicable to Flux and subscribes to the FLuxes in sequence
@@ -90,14 +101,14 @@ public class FluxAndMonoGeneratorService {
         Flux<String> flux1 = Flux.just("KAIVALYA");
         Flux<String> flux2 = Flux.just("SOURAV", "SRIVASTAVA");
 
-        return Flux.concat(flux1, flux2).log();
+        return Flux.concat(flux1, flux2).transform(signalTracer.flux("concatOperation"));
     }
 
     public Flux<String> concatWithOperation(){
         Flux<String> flux1 = Flux.just("KAIVALYA", "SOURAV");
         Flux<String> flux2 = Flux.just("SRIVASTAVA");
 
-        return flux1.concatWith(flux2).log();
+        return flux1.concatWith(flux2).transform(signalTracer.flux("concatWithOperation"));
     }
 
     //merge() subscribes to all the Fluxes simultaneously
@@ -105,14 +116,14 @@ public class FluxAndMonoGeneratorService {
         Flux<String> flux1 = Flux.just("MR.", "KAIVALYA").delayElements(Duration.ofMillis(100));
         Flux<String> flux2 = Flux.just("SOURAV", "SRIVASTAVA").delayElements(Duration.ofMillis(110));
 
-        return Flux.merge(flux1, flux2).log();//MR., SOURAV, KAIVALYA, SRIVASTAVA
+        return Flux.merge(flux1, flux2).transform(signalTracer.flux("mergeOperation"));//MR., SOURAV, KAIVALYA, SRIVASTAVA
     }
 
     public Flux<String> mergeWithOperation(){
         Mono<String> mono1 = Mono.just("KAIVALYA");
         Mono<String> mono2 = Mono.just("SRIVASTAVA");
 
-        return mono2.mergeWith(mono1).log();//SRIVASTAVA, KAIVALYA
+        return mono2.mergeWith(mono1).transform(signalTracer.flux("mergeWithOperation"));//SRIVASTAVA, KAIVALYA
     }
 
     //mergeSequential() subscibes all the Fluxes simultaneously but the merge happens sequentially
@@ -120,23 +131,23 @@ public class FluxAndMonoGeneratorService {
         Flux<String> flux1 = Flux.just("MR.", "KAIVALYA");
         Flux<String> flux2 = Flux.just("SOURAV", "SRIVASTAVA");
 
-        return Flux.mergeSequential(flux1, flux2).log();//MR., KAIVALYA, SOURAV, SRIVASTAVA
-        //return Flux.mergeSequential(flux2, flux1).log();//SOURAV, SRIVASTAVA, MR., KAIVALYA
+        return Flux.mergeSequential(flux1, flux2).transform(signalTracer.flux("mergeSequentialOperation"));//MR., KAIVALYA, SOURAV, SRIVASTAVA
+        //return Flux.mergeSequential(flux2, flux1);//SOURAV, SRIVASTAVA, MR., KAIVALYA
     }
 
     public Flux<Integer> zipOperation(){
         Flux<Integer> flux1 = Flux.just(24, 15);
         Flux<Integer> flux2 = Flux.just(60, 42);
 
-        return Flux.zip(flux1, flux2, (first, second) -> first + second).log();//84, 67
+        return Flux.zip(flux1, flux2, (first, second) -> first + second).transform(signalTracer.flux("zipOperation"));//84, 67
     }
 
     public Flux<Integer> zipWithOperation(){
         Flux<Integer> flux1 = Flux.just(24, 15);
         Flux<Integer> flux2 = Flux.just(60, 42);
 
-        return flux2.zipWith(flux1, (first, second) -> first - second).log();//36, 27
-        //return flux1.zipWith(flux2, (first, second) -> first - second).log();//-36, -27
+        return flux2.zipWith(flux1, (first, second) -> first - second).transform(signalTracer.flux("zipWithOperation"));//36, 27
+        //return flux1.zipWith(flux2, (first, second) -> first - second);//-36, -27
     }
 
     public Flux<Integer> zipOperationWithoutCombinator(){
@@ -146,7 +157,8 @@ public class FluxAndMonoGeneratorService {
         Flux<Integer> flux4 = Flux.just(114, 78);
 
         return Flux.zip(flux1, flux2, flux3, flux4)
-                .map(t4 -> t4.getT1() + t4.getT2() + t4.getT3() + t4.getT4()).log();//204, 240
+                .map(t4 -> t4.getT1() + t4.getT2() + t4.getT3() + t4.getT4())
+                .transform(signalTracer.flux("zipOperationWithoutCombinator"));//204, 240
     }
 
     //zip() or zipWith() returns a Mono when operating on Monos.
@@ -157,7 +169,8 @@ public class FluxAndMonoGeneratorService {
         Mono<Integer> flux4 = Mono.just(78);
 
         return Mono.zip(flux1, flux2, flux3, flux4)
-                .map(t4 -> t4.getT1() + t4.getT2() + t4.getT3() + t4.getT4()).log();//249
+                .map(t4 -> t4.getT1() + t4.getT2() + t4.getT3() + t4.getT4())
+                .transform(signalTracer.mono("zipOperationWithoutCombinatorMono"));//249
     }
     private Mono<List<String>> getCharList(String s){
         String[] charArray = s.split("");
@@ -0,0 +1,60 @@
+package com.learnreactiveprogramming.util;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+//Replacement for .log(), used with transform(), e.g. flux.transform(signalTracer.flux("namesFlux")).
+//Logs every signal of 1 in sampleRate subscriptions under reactor.signals.<name> and nothing when it's disabled,
+//logback.xml writes these through an async appender.
+public class SignalTracer {
+
+    public static final String CATEGORY_PREFIX = "reactor.signals.";
+
+    private final AtomicLong subscriptions = new AtomicLong();
+
+    private volatile boolean enabled;
+    private volatile int sampleRate;
+
+    public SignalTracer(boolean enabled, int sampleRate) {
+        configure(enabled, sampleRate);
+    }
+
+    //-DsignalTracing.enabled=true -DsignalTracing.sampleRate=N, off by default
+    public static SignalTracer fromSystemProperties() {
+        return new SignalTracer(Boolean.getBoolean("signalTracing.enabled"),
+                Integer.getInteger("signalTracing.sampleRate", 1));
+    }
+
+    //whether to trace is decided per subscription
+    public <T> Function<Flux<T>, Flux<T>> flux(String name) {
+        return flux -> flux.transformDeferred(source -> sampled() ? source.log(CATEGORY_PREFIX + name, Level.INFO) : source);
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> mono(String name) {
+        return mono -> mono.transformDeferred(source -> sampled() ? source.log(CATEGORY_PREFIX + name, Level.INFO) : source);
+    }
+
+    private boolean sampled() {
+        return enabled && subscriptions.getAndIncrement() % sampleRate == 0;
+    }
+
+    public void configure(boolean enabled, int sampleRate) {
+        if (sampleRate < 1)
+            throw new IllegalArgumentException("signalTracing.sampleRate must be at least 1, was " + sampleRate);
+
+        this.sampleRate = sampleRate;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+}